@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api;
+
+import java.util.List;
+
+/**
+ * A {@link StatusInfoListener} which can receive the events caused by one bulk call of {@link StatusInfoService} as a
+ * single notification. {@link #isInterestedInStatusInfo(StatusInfo)} is still called for each operation, and only the
+ * operations this listener is interested in are included in the batch. Events caused by other calls are received via
+ * {@link #operationChanged(StatusInfo, ChangeType, int)} as usual.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public interface BatchStatusInfoListener
+    extends StatusInfoListener
+{
+    /**
+     * Called once for each type of change caused by a bulk call, instead of calling
+     * {@link #operationChanged(StatusInfo, ChangeType, int)} for each operation.
+     * 
+     * @param statusInfos The changed operations, in the order the changes happened. Never empty.
+     * @param changeType The type of the change.
+     * @param stepsAdded The amount of steps added to each operation, at the same index as the operation.
+     */
+    public void operationsChanged( List<StatusInfo> statusInfos, ChangeType changeType, int[] stepsAdded );
+}
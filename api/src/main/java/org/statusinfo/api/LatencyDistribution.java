@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statusinfo.api;
+
+/**
+ * Distribution of durations, in nanoseconds. Values are kept in buckets whose width grows with the value, so that
+ * memory use is fixed and every reported value is within a few percent of the actual value.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public interface LatencyDistribution
+{
+    public long getCount();
+
+    public double getMean();
+
+    public long getMax();
+
+    /**
+     * Returns the value which is greater than or equal to given percentage of all values, e.g. {@code 99.9} for the
+     * 99.9th percentile.
+     * 
+     * @param percentile The percentile, between {@code 0} and {@code 100}.
+     * @return The value at given percentile, or {@code 0} if there are no values.
+     */
+    public long getValueAtPercentile( double percentile );
+}
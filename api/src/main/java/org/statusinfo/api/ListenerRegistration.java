@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api;
+
+/**
+ * Handle to a {@link StatusInfoListener} added to {@link StatusInfoService}.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public interface ListenerRegistration
+{
+    public StatusInfoListener getListener();
+
+    /**
+     * Checks whether the listener is still receiving notifications.
+     * 
+     * @return {@code true} if the listener has not been unregistered yet, {@code false} otherwise.
+     */
+    public boolean isActive();
+
+    /**
+     * Stops notifications to the listener. Calling this method more than once has no effect.
+     */
+    public void unregister();
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api;
+
+/**
+ * Direct handle to an operation in progress. Using the handle avoids looking up the operation by its receipt. The
+ * receipt is still available via {@link #getReceipt()}, e.g. for passing it to another component.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public interface OperationHandle
+    extends OperationCreationResult
+{
+    /**
+     * Checks whether the operation of this handle is still in progress.
+     * 
+     * @return {@code true} if the operation has not been ended yet, {@code false} otherwise.
+     */
+    public boolean isActive();
+
+    /**
+     * Adds steps to the operation.
+     * 
+     * @param amountOfSteps The amount of steps to add.
+     * @throws NoOperationInProgressException If the operation has already been ended.
+     */
+    public void update( int amountOfSteps );
+
+    /**
+     * Ends the operation and all operations nested within it in the same thread.
+     * 
+     * @return {@code true} if the operation was ended by this call, {@code false} if it had already been ended.
+     */
+    public boolean end();
+
+    public OperationHandle subOperation( String name );
+
+    /**
+     * Starts a sub-operation of this operation in the current thread.
+     * 
+     * @param name The name of the sub-operation.
+     * @param maxSteps The maximum amount of steps of the sub-operation.
+     * @return The handle to the sub-operation.
+     * @throws NoOperationInProgressException If this operation has already been ended.
+     */
+    public OperationHandle subOperation( String name, int maxSteps );
+
+    /**
+     * Starts a sub-operation of this operation in the current thread, which counts as given share of the progress of
+     * this operation, see {@link StatusInfo#getProgress()}.
+     * 
+     * @param name The name of the sub-operation.
+     * @param maxSteps The maximum amount of steps of the sub-operation.
+     * @param shareOfParent The share of the progress of this operation which the sub-operation stands for, greater
+     *            than {@code 0} and at most {@code 1}.
+     * @return The handle to the sub-operation.
+     * @throws NoOperationInProgressException If this operation has already been ended.
+     */
+    public OperationHandle subOperation( String name, int maxSteps, double shareOfParent );
+}
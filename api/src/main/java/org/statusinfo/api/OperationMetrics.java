@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statusinfo.api;
+
+/**
+ * Aggregate statistics of all operations with the same name, as they were when this object was created. Collected only
+ * when enabled with {@link org.statusinfo.api.bootstrap.StatusInfoSettings#setCollectingMetrics(boolean)}.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public interface OperationMetrics
+{
+    public String getOperationName();
+
+    public long getStarted();
+
+    /**
+     * Returns the amount of operations which have ended, including the ones which have failed.
+     * 
+     * @return The amount of ended operations.
+     */
+    public long getCompleted();
+
+    public long getInFlight();
+
+    /**
+     * Returns the amount of operations run by
+     * {@link StatusInfoService#performOperation(String, int, StatusInfoService.Operation)} which ended by throwing.
+     * 
+     * @return The amount of failed operations.
+     */
+    public long getFailed();
+
+    public long getTotalSteps();
+
+    /**
+     * Returns the distribution of durations of ended operations. Empty if operations are not timed.
+     * 
+     * @return The distribution of durations of ended operations, in nanoseconds.
+     */
+    public LatencyDistribution getLatencies();
+}
@@ -14,6 +14,8 @@
 
 package org.statusinfo.api;
 
+import java.util.List;
+
 /**
  * 
  * @author 2011 Stanislav Muhametsin
@@ -23,5 +25,24 @@ public interface OperationSnapshot
 
     public Iterable<ThreadSnapshot> getThreadSnapshots();
 
+    /**
+     * Returns the operations in progress which are not bound to any thread, so they are not part of any
+     * {@link ThreadSnapshot}. These are the asynchronous operations, see
+     * {@link StatusInfoService#performOperationAsync(String, java.util.function.Supplier)}, and the operations started
+     * with {@link StatusInfoService#startSubOperations(String, String, int, int)}.
+     * 
+     * @return The operations in progress which are not bound to any thread.
+     */
+    public List<StatusInfoSnapshot> getAsyncOperationStatuses();
+
     public int getAmountOfAllListeners();
+
+    /**
+     * Returns the amount of events which have not been delivered to listeners, because the ring buffer of the
+     * dispatcher was full, see {@link org.statusinfo.api.bootstrap.StatusInfoSettings.OverflowPolicy}. Always zero
+     * unless running in {@link org.statusinfo.api.bootstrap.StatusInfoSettings.DispatchMode#ASYNCHRONOUS} mode.
+     * 
+     * @return The amount of events dropped since the service was activated.
+     */
+    public long getAmountOfDroppedEvents();
 }
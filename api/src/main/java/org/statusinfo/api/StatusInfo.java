@@ -19,6 +19,11 @@ package org.statusinfo.api;
  */
 public interface StatusInfo
 {
+    /**
+     * Returned by the time methods when operations are not timed, and by {@link #getEndTime()} for operations in
+     * progress.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
 
     public StatusInfo getParent();
 
@@ -26,9 +31,80 @@ public interface StatusInfo
 
     public String getName();
 
+    /**
+     * Returns the thread of this operation.
+     * 
+     * @return The thread of this operation, or {@code null} if this operation is not bound to any thread, see
+     *         {@link OperationSnapshot#getAsyncOperationStatuses()}.
+     */
     public Thread getThread();
 
     public int getMaxSteps();
 
     public int getCurrentSteps();
+
+    /**
+     * Returns the time when this operation was started. Times are in nanoseconds, as returned by the
+     * {@link org.statusinfo.api.bootstrap.Clock} of the service, and only differences between them are meaningful.
+     * 
+     * @return The start time, or {@link #NO_TIME} if operations are not timed.
+     */
+    public long getStartTime();
+
+    /**
+     * Returns the time when this operation was last updated. See {@link #getStartTime()} for the meaning of times.
+     * 
+     * @return The time of the last update, the start time if this operation has not been updated, or
+     *         {@link #NO_TIME} if operations are not timed.
+     */
+    public long getLastUpdateTime();
+
+    /**
+     * Returns the time when this operation was ended. See {@link #getStartTime()} for the meaning of times.
+     * 
+     * @return The end time, or {@link #NO_TIME} if this operation is still in progress or operations are not timed.
+     */
+    public long getEndTime();
+
+    /**
+     * Returns how long this operation took. For operations in progress, this is the time elapsed so far, or until the
+     * snapshot containing this status info was created.
+     * 
+     * @return The duration in nanoseconds, or {@link #NO_TIME} if operations are not timed.
+     */
+    public long getDuration();
+
+    /**
+     * Returns the rate at which this operation is currently making progress. The rate is an exponentially weighted
+     * moving average, so recent updates weigh more than older ones, and the rate slows down when there are no updates.
+     * 
+     * @return The amount of steps per second, or {@code 0} if the rate is not known yet or operations are not timed.
+     */
+    public double getStepRate();
+
+    /**
+     * Returns the estimated time until this operation ends. The estimate is based on the remaining steps and the
+     * current step rate. When the rate is not known, or this operation has no maximum amount of steps, the estimate
+     * is based on the average duration of earlier operations with the same name, if metrics are collected.
+     * 
+     * @return The estimated remaining time in nanoseconds, or {@link #NO_TIME} if it can not be estimated.
+     */
+    public long getEstimatedTimeRemaining();
+
+    /**
+     * Returns the overall progress of this operation. It is the sum of
+     * <ul>
+     * <li>the ratio of current steps to maximum steps of this operation, or nothing if this operation has no maximum
+     * amount of steps,</li>
+     * <li>the progress of each child operation started with a share of this operation, multiplied by the share,
+     * and</li>
+     * <li>the full share of each such child operation which has ended.</li>
+     * </ul>
+     * Operations which have ended have progress {@code 1}. Child operations without maximum amount of steps thus
+     * contribute only through their own children, and through their end. Reading the progress is O(1), as it is
+     * updated up the operation tree whenever it changes.
+     * 
+     * @return The overall progress, between {@code 0} and {@code 1}.
+     */
+    public double getProgress();
 }
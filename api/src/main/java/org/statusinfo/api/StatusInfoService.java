@@ -13,6 +13,13 @@
  */
 package org.statusinfo.api;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 /**
  * @author Stanislav Muhametsin
  * 
@@ -35,9 +42,49 @@ public interface StatusInfoService
         Operation<ReturnType, ExceptionType> operation )
         throws ExceptionType;
 
-    public void addStatusInfoListener( StatusInfoListener listener );
+    /**
+     * Performs an asynchronous operation. Unlike other operations, it is not bound to any thread: it begins when the
+     * stage is requested from the supplier, and ends when the stage completes, in whichever thread that happens. It
+     * has no parent operation, and it is not the current operation of any thread. Asynchronous operations are listed
+     * separately in snapshots, see {@link OperationSnapshot#getAsyncOperationStatuses()}.
+     * 
+     * @param name The name of the operation.
+     * @param operation Supplier of the stage to track. Must not return {@code null}.
+     * @return A stage which completes like the stage of the operation, once the operation has ended.
+     * @throws IllegalStateException If the operation returns {@code null}. The operation is ended as failed first.
+     */
+    public <ReturnType> CompletionStage<ReturnType> performOperationAsync( String name,
+        Supplier<? extends CompletionStage<ReturnType>> operation );
+
+    /**
+     * Performs an asynchronous operation, which may update its progress or start sub-operations via given handle. See
+     * {@link #performOperationAsync(String, Supplier)}.
+     * 
+     * @param name The name of the operation.
+     * @param maxSteps The maximum amount of steps of the operation.
+     * @param operation Function returning the stage to track, given the handle to the operation. Must not return
+     *            {@code null}.
+     * @return A stage which completes like the stage of the operation, once the operation has ended.
+     * @throws IllegalStateException If the operation returns {@code null}. The operation is ended as failed first.
+     */
+    public <ReturnType> CompletionStage<ReturnType> performOperationAsync( String name, int maxSteps,
+        Function<? super OperationHandle, ? extends CompletionStage<ReturnType>> operation );
+
+    public ListenerRegistration addStatusInfoListener( StatusInfoListener listener );
 
-    public void addStatusInfoListenerUntilEndOfCurrentOperation( StatusInfoListener listener );
+    /**
+     * Adds a listener which only receives the events matching given subscription.
+     * 
+     * @param listener The listener to add.
+     * @param subscription The events the listener wants to receive.
+     * @return The {@link ListenerRegistration} of the listener.
+     * @throws NoOperationInProgressException If subscription is for a subtree, and no operation with its receipt is
+     *             in progress.
+     */
+    public ListenerRegistration addStatusInfoListener( StatusInfoListener listener,
+        StatusInfoSubscription subscription );
+
+    public ListenerRegistration addStatusInfoListenerUntilEndOfCurrentOperation( StatusInfoListener listener );
 
     public void removeStatusInfoListener( StatusInfoListener listener );
 
@@ -49,6 +96,41 @@ public interface StatusInfoService
 
     public OperationCreationResult startOperation( Thread thread, String name, int maxSteps );
 
+    public OperationHandle startOperationWithHandle( String name );
+
+    /**
+     * Starts an operation in the current thread, and returns a handle for direct access to it. The operation can also
+     * be accessed using its receipt, like operations started with {@link #startOperation(String, int)}.
+     * 
+     * @param name The name of the operation to begin.
+     * @param maxSteps The maximum amount of steps of the operation.
+     * @return {@link OperationHandle} to the operation.
+     */
+    public OperationHandle startOperationWithHandle( String name, int maxSteps );
+
+    /**
+     * Starts an operation in the current thread, which counts as given share of the progress of the current operation
+     * of the thread, see {@link StatusInfo#getProgress()}.
+     * 
+     * @param name The name of the operation to begin.
+     * @param maxSteps The maximum amount of steps of the operation.
+     * @param shareOfParent The share of the progress of the current operation which the new operation stands for,
+     *            greater than {@code 0} and at most {@code 1}. Ignored if there is no current operation.
+     * @return {@link OperationHandle} to the operation.
+     */
+    public OperationHandle startOperationWithHandle( String name, int maxSteps, double shareOfParent );
+
+    /**
+     * Starts an operation in the current thread, which is meant to have its progress updated by many threads at once,
+     * e.g. a parent operation of parallel work. Updates to such operation do not contend with each other, but reading
+     * its current steps is a bit more expensive.
+     * 
+     * @param name The name of the operation to begin.
+     * @param maxSteps The maximum amount of steps of the operation.
+     * @return {@link OperationHandle} to the operation.
+     */
+    public OperationHandle startSharedOperation( String name, int maxSteps );
+
     /**
      * This method should be used when one wants to start a sub-operation from another thread.
      * 
@@ -58,11 +140,85 @@ public interface StatusInfoService
      */
     public OperationCreationResult startSubOperation( String parentReceipt, String name );
 
+    /**
+     * Starts given amount of sub-operations of the same parent at once. This is cheaper than calling
+     * {@link #startSubOperation(String, String)} for each of them, and {@link BatchStatusInfoListener}s are notified
+     * about their beginning with a single call. The operations are siblings which are not bound to any thread: each of
+     * them may be ended on its own, in any order and from any thread, and none of them becomes the current operation of
+     * the current thread. Like asynchronous operations, they are listed in
+     * {@link OperationSnapshot#getAsyncOperationStatuses()}.
+     * 
+     * @param parentReceipt The receipt of the parent operation, or {@code null} to use the current operation of the
+     *            current thread.
+     * @param name The name of the operations to begin.
+     * @param maxSteps The maximum amount of steps of each operation.
+     * @param amount The amount of operations to begin.
+     * @return {@link OperationCreationResult}s of the operations, in the order they were started.
+     * @throws IllegalArgumentException If {@code amount} is negative.
+     */
+    public List<OperationCreationResult> startSubOperations( String parentReceipt, String name, int maxSteps,
+        int amount );
+
     public boolean endOperation( String receipt );
 
+    /**
+     * Ends the operations with given receipts at once, along with the operations nested within them in their threads.
+     * {@link BatchStatusInfoListener}s are notified about all ended operations with a single call. Receipts of
+     * operations which have already ended are ignored.
+     * 
+     * @param receipts The receipts of the operations to end.
+     * @return The amount of given operations which were ended by this call, as with {@link #endOperation(String)}.
+     */
+    public int endOperations( Collection<String> receipts );
+
     public void updateCurrentOperation( int amountOfSteps );
 
     public void updateOperation( String receipt, int amountOfSteps );
 
+    /**
+     * Adds steps to many operations at once. {@link BatchStatusInfoListener}s are notified about the changes with a
+     * single call. No steps are added if any of the operations is not in progress.
+     * 
+     * @param receipts The receipts of the operations to update.
+     * @param amountsOfSteps The amount of steps to add to each operation, at the same index as its receipt.
+     * @throws IllegalArgumentException If the arrays are of different length.
+     * @throws NoOperationInProgressException If any of the operations is not in progress.
+     */
+    public void updateOperations( String[] receipts, int[] amountsOfSteps );
+
+    /**
+     * Returns the current operation of the current thread. This is much cheaper than taking a snapshot, and is meant
+     * for passing the operation on to other threads, e.g. with {@link #startSubOperation(String, String)}.
+     * 
+     * @return {@link OperationCreationResult} of the current operation of the current thread, or {@code null} if
+     *         there is none.
+     */
+    public OperationCreationResult getCurrentOperation();
+
+    /**
+     * Returns a snapshot of the operations in progress. Taking a snapshot never blocks starting, updating or ending
+     * operations, so the snapshot is not an atomic view of all operations: each thread snapshot contains the
+     * operations of its thread as they were at some moment while the snapshot was being taken, and the thread
+     * snapshots may be from different moments. Likewise, each status info is frozen at some moment while the
+     * snapshot was being taken, and does not change after that.
+     * 
+     * @return The snapshot of the operations in progress.
+     */
     public OperationSnapshot getSnapshotOfCurrentState();
+
+    /**
+     * Returns the statistics of operations with given name.
+     * 
+     * @param name The name of the operations.
+     * @return The statistics of operations with given name, or {@code null} if no such operation has been started or
+     *         metrics are not collected.
+     */
+    public OperationMetrics getOperationMetrics( String name );
+
+    /**
+     * Returns the statistics of operations of every name.
+     * 
+     * @return The statistics of operations, by operation name. Empty if metrics are not collected.
+     */
+    public Map<String, OperationMetrics> getAllOperationMetrics();
 }
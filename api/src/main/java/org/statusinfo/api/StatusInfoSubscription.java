@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.qi4j.api.util.NullArgumentException;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+
+/**
+ * Declares which events a listener wants to receive, given to
+ * {@link StatusInfoService#addStatusInfoListener(StatusInfoListener, StatusInfoSubscription)}. The service indexes
+ * listeners by these criteria, so events not matching them are rejected without calling any listener code. Events
+ * matching all criteria are then passed through {@link StatusInfoListener#isInterestedInStatusInfo(StatusInfo)} as
+ * usual. By default, all events are accepted. All setters return this object so that calls can be chained.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public final class StatusInfoSubscription
+{
+    private Set<ChangeType> _changeTypes;
+    private String _namePrefix;
+    private Pattern _namePattern;
+    private Thread _thread;
+    private String _subtreeReceipt;
+
+    public StatusInfoSubscription()
+    {
+        this._changeTypes = EnumSet.allOf( ChangeType.class );
+        this._namePrefix = null;
+        this._namePattern = null;
+        this._thread = null;
+        this._subtreeReceipt = null;
+    }
+
+    public Set<ChangeType> getChangeTypes()
+    {
+        return this._changeTypes;
+    }
+
+    public String getNamePrefix()
+    {
+        return this._namePrefix;
+    }
+
+    public Pattern getNamePattern()
+    {
+        return this._namePattern;
+    }
+
+    public Thread getThread()
+    {
+        return this._thread;
+    }
+
+    public String getSubtreeReceipt()
+    {
+        return this._subtreeReceipt;
+    }
+
+    /**
+     * Restricts events to given change types.
+     * 
+     * @param first The first accepted change type.
+     * @param rest Other accepted change types.
+     * @return This object.
+     */
+    public StatusInfoSubscription setChangeTypes( ChangeType first, ChangeType... rest )
+    {
+        NullArgumentException.validateNotNull( "Change type", first );
+        this._changeTypes = EnumSet.of( first, rest );
+        return this;
+    }
+
+    /**
+     * Restricts events to operations, which name starts with given prefix.
+     * 
+     * @param namePrefix The prefix of operation names, or {@code null} to accept all names.
+     * @return This object.
+     */
+    public StatusInfoSubscription setNamePrefix( String namePrefix )
+    {
+        this._namePrefix = namePrefix;
+        return this;
+    }
+
+    /**
+     * Restricts events to operations, which name matches given pattern as a whole.
+     * 
+     * @param namePattern The pattern for operation names, or {@code null} to accept all names.
+     * @return This object.
+     */
+    public StatusInfoSubscription setNamePattern( Pattern namePattern )
+    {
+        this._namePattern = namePattern;
+        return this;
+    }
+
+    /**
+     * Restricts events to operations of given thread.
+     * 
+     * @param thread The thread, or {@code null} to accept operations of all threads.
+     * @return This object.
+     */
+    public StatusInfoSubscription setThread( Thread thread )
+    {
+        this._thread = thread;
+        return this;
+    }
+
+    /**
+     * Restricts events to the operation with given receipt and all operations started within it, in any thread. The
+     * listener is removed once that operation ends.
+     * 
+     * @param subtreeReceipt The receipt of the operation, or {@code null} to accept operations of all subtrees.
+     * @return This object.
+     */
+    public StatusInfoSubscription setSubtree( String subtreeReceipt )
+    {
+        this._subtreeReceipt = subtreeReceipt;
+        return this;
+    }
+}
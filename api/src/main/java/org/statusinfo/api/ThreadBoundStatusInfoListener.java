@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api;
+
+/**
+ * A {@link StatusInfoListener} which is only interested in operations of a single thread. The service indexes such
+ * listeners by their thread, so that events of other threads never reach them, and the cost of notifying does not
+ * grow with the amount of listeners bound to other threads. {@link #isInterestedInStatusInfo(StatusInfo)} is still
+ * called for operations of the bound thread, so it may be used to narrow the events further.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public interface ThreadBoundStatusInfoListener
+    extends StatusInfoListener
+{
+    /**
+     * Returns the thread which operations this listener is interested in. This must always return the same thread.
+     * 
+     * @return The thread which operations this listener is interested in, or {@code null} if the listener is to be
+     *         consulted about operations of all threads, like any other {@link StatusInfoListener}.
+     */
+    public Thread getListenedThread();
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api.bootstrap;
+
+/**
+ * Source of time for the status info service. Implementations must be thread-safe, and must be cheap to call, since
+ * the clock is read whenever operations are started, updated and ended.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public interface Clock
+{
+    /**
+     * Returns the current time in nanoseconds. Like {@link System#nanoTime()}, the value has no relation to wall-clock
+     * time, only differences between two values are meaningful. Successive calls must never return decreasing values.
+     * 
+     * @return The current time in nanoseconds.
+     */
+    public long nanoTime();
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api.bootstrap;
+
+/**
+ * Generates IDs and receipts for operations. Implementations must be thread-safe, and every returned value must be
+ * unique within the service.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public interface OperationIDGenerator
+{
+    /**
+     * Generates a new ID, returned by {@link org.statusinfo.api.StatusInfo#getID()}.
+     * 
+     * @return A new ID.
+     */
+    public String newID();
+
+    /**
+     * Generates a new receipt, returned by {@link org.statusinfo.api.OperationCreationResult#getReceipt()}.
+     * 
+     * @return A new receipt.
+     */
+    public String newReceipt();
+}
@@ -29,4 +29,6 @@ public interface StatusInfoAssemblerProvider
         .iterator().next();
 
     Assembler getAssembler( Visibility visibility );
+
+    Assembler getAssembler( Visibility visibility, StatusInfoSettings settings );
 }
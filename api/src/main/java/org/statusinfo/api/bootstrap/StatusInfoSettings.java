@@ -0,0 +1,542 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api.bootstrap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.qi4j.api.util.NullArgumentException;
+
+/**
+ * Settings for the status info service. These are given to
+ * {@link StatusInfoAssemblerProvider#getAssembler(org.qi4j.api.common.Visibility, StatusInfoSettings)} when
+ * assembling the service. All setters return this object so that calls can be chained.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public final class StatusInfoSettings
+{
+    public enum DispatchMode
+    {
+        /**
+         * Listeners are notified in the thread which started, updated or ended the operation.
+         */
+        SYNCHRONOUS,
+
+        /**
+         * Events are put into bounded ring buffers, and listeners are notified by dedicated dispatcher threads.
+         * Events of operations within the same operation tree are always delivered in the order they happened.
+         */
+        ASYNCHRONOUS
+    }
+
+    /**
+     * How the dispatcher threads wait for new events, when running in {@link DispatchMode#ASYNCHRONOUS} mode.
+     */
+    public enum WaitPolicy
+    {
+        /**
+         * Park the dispatcher thread until a new event is published. Lowest CPU usage, highest latency.
+         */
+        BLOCKING,
+
+        /**
+         * Spin and yield for a while, then sleep for short periods.
+         */
+        SLEEPING,
+
+        /**
+         * Spin for a while, then yield the processor.
+         */
+        YIELDING,
+
+        /**
+         * Keep spinning. Lowest latency, but consumes a whole core per dispatcher thread.
+         */
+        BUSY_SPIN
+    }
+
+    /**
+     * What to do when an event is published and the ring buffer is full, when running in
+     * {@link DispatchMode#ASYNCHRONOUS} mode.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * Wait until there is room in the buffer. Events published by listeners in the dispatcher threads are dropped
+         * instead, as the dispatcher threads would end up waiting for themselves.
+         */
+        BLOCK,
+
+        /**
+         * Drop {@link org.statusinfo.api.StatusInfoListener.ChangeType#CHANGED} events, wait for room with other
+         * events like {@link #BLOCK} does.
+         */
+        DROP_CHANGED,
+
+        /**
+         * Drop the event.
+         */
+        DROP
+    }
+
+    /**
+     * What the reaper does with leaked operations, see
+     * {@link StatusInfoSettings#setReaping(long, TimeUnit, int, LeakAction)}.
+     */
+    public enum LeakAction
+    {
+        /**
+         * Log a warning about the operation, once. The operation is left in progress.
+         */
+        REPORT,
+
+        /**
+         * Log a warning about the operation and end it, notifying listeners as usual.
+         */
+        END
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    public static final int DEFAULT_REAPER_BUDGET = 1000;
+
+    private DispatchMode _dispatchMode;
+    private int _dispatcherThreads;
+    private int _bufferSize;
+    private WaitPolicy _waitPolicy;
+    private OverflowPolicy _overflowPolicy;
+    private long _coalescingIntervalNanos;
+    private int _coalescingStepThreshold;
+    private OperationIDGenerator _idGenerator;
+    private boolean _secureReceipts;
+    private long _reaperPeriodNanos;
+    private int _reaperBudget;
+    private LeakAction _leakAction;
+    private long _maxOperationAgeNanos;
+    private boolean _recordingCreationSites;
+    private Clock _clock;
+    private long _clockResolutionNanos;
+    private boolean _timing;
+    private boolean _collectingMetrics;
+    private final Map<String, TrackingPolicy> _trackingPolicies;
+    private int _verbosity;
+
+    public StatusInfoSettings()
+    {
+        this._dispatchMode = DispatchMode.SYNCHRONOUS;
+        this._dispatcherThreads = 1;
+        this._bufferSize = DEFAULT_BUFFER_SIZE;
+        this._waitPolicy = WaitPolicy.BLOCKING;
+        this._overflowPolicy = OverflowPolicy.BLOCK;
+        this._coalescingIntervalNanos = 0L;
+        this._coalescingStepThreshold = 0;
+        this._idGenerator = null;
+        this._secureReceipts = false;
+        this._reaperPeriodNanos = 0L;
+        this._reaperBudget = DEFAULT_REAPER_BUDGET;
+        this._leakAction = LeakAction.REPORT;
+        this._maxOperationAgeNanos = 0L;
+        this._recordingCreationSites = false;
+        this._clock = null;
+        this._clockResolutionNanos = 0L;
+        this._timing = true;
+        this._collectingMetrics = false;
+        this._trackingPolicies = new HashMap<String, TrackingPolicy>();
+        this._verbosity = 0;
+    }
+
+    public DispatchMode getDispatchMode()
+    {
+        return this._dispatchMode;
+    }
+
+    public int getDispatcherThreads()
+    {
+        return this._dispatcherThreads;
+    }
+
+    public int getBufferSize()
+    {
+        return this._bufferSize;
+    }
+
+    public WaitPolicy getWaitPolicy()
+    {
+        return this._waitPolicy;
+    }
+
+    public OverflowPolicy getOverflowPolicy()
+    {
+        return this._overflowPolicy;
+    }
+
+    public boolean isCoalescingChanges()
+    {
+        return this._coalescingIntervalNanos > 0L || this._coalescingStepThreshold > 0;
+    }
+
+    public long getCoalescingIntervalNanos()
+    {
+        return this._coalescingIntervalNanos;
+    }
+
+    public int getCoalescingStepThreshold()
+    {
+        return this._coalescingStepThreshold;
+    }
+
+    /**
+     * Returns the generator for operation IDs and receipts.
+     *
+     * @return The generator for operation IDs and receipts, or {@code null} if the default generator of the
+     *         implementation should be used.
+     */
+    public OperationIDGenerator getIDGenerator()
+    {
+        return this._idGenerator;
+    }
+
+    public boolean isSecureReceipts()
+    {
+        return this._secureReceipts;
+    }
+
+    public boolean isReaping()
+    {
+        return this._reaperPeriodNanos > 0L;
+    }
+
+    public long getReaperPeriodNanos()
+    {
+        return this._reaperPeriodNanos;
+    }
+
+    public int getReaperBudget()
+    {
+        return this._reaperBudget;
+    }
+
+    public LeakAction getLeakAction()
+    {
+        return this._leakAction;
+    }
+
+    public long getMaxOperationAgeNanos()
+    {
+        return this._maxOperationAgeNanos;
+    }
+
+    public boolean isRecordingCreationSites()
+    {
+        return this._recordingCreationSites;
+    }
+
+    /**
+     * Returns the clock used for timing operations.
+     *
+     * @return The clock, or {@code null} if the default clock of the implementation should be used.
+     */
+    public Clock getClock()
+    {
+        return this._clock;
+    }
+
+    public long getClockResolutionNanos()
+    {
+        return this._clockResolutionNanos;
+    }
+
+    public boolean isTiming()
+    {
+        return this._timing;
+    }
+
+    public boolean isCollectingMetrics()
+    {
+        return this._collectingMetrics;
+    }
+
+    /**
+     * Returns the tracking policies of operation names which have one.
+     *
+     * @return Unmodifiable map of tracking policies, by operation name.
+     */
+    public Map<String, TrackingPolicy> getTrackingPolicies()
+    {
+        return Collections.unmodifiableMap( this._trackingPolicies );
+    }
+
+    public int getVerbosity()
+    {
+        return this._verbosity;
+    }
+
+    public StatusInfoSettings setDispatchMode( DispatchMode dispatchMode )
+    {
+        NullArgumentException.validateNotNull( "Dispatch mode", dispatchMode );
+        this._dispatchMode = dispatchMode;
+        return this;
+    }
+
+    /**
+     * Switches to {@link DispatchMode#ASYNCHRONOUS} mode.
+     *
+     * @param dispatcherThreads The amount of dispatcher threads. Each thread has its own ring buffer.
+     * @param bufferSize The size of the ring buffer of each dispatcher thread. Will be rounded up to the next power of
+     *            two.
+     * @param waitPolicy How the dispatcher threads wait for new events.
+     * @param overflowPolicy What to do when the ring buffer is full.
+     * @return This object.
+     */
+    public StatusInfoSettings setAsynchronousDispatch( int dispatcherThreads, int bufferSize, WaitPolicy waitPolicy,
+        OverflowPolicy overflowPolicy )
+    {
+        if( dispatcherThreads < 1 )
+        {
+            throw new IllegalArgumentException( "The amount of dispatcher threads must be at least 1." );
+        }
+        if( bufferSize < 1 )
+        {
+            throw new IllegalArgumentException( "The buffer size must be at least 1." );
+        }
+        NullArgumentException.validateNotNull( "Wait policy", waitPolicy );
+        NullArgumentException.validateNotNull( "Overflow policy", overflowPolicy );
+
+        this._dispatchMode = DispatchMode.ASYNCHRONOUS;
+        this._dispatcherThreads = dispatcherThreads;
+        this._bufferSize = bufferSize;
+        this._waitPolicy = waitPolicy;
+        this._overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * Makes the service merge step updates of each operation. Instead of one
+     * {@link org.statusinfo.api.StatusInfoListener.ChangeType#CHANGED} event per update, listeners will get at most one
+     * event per operation per given interval or step threshold, carrying the sum of steps added since the previous
+     * event. Remaining steps are always delivered before the
+     * {@link org.statusinfo.api.StatusInfoListener.ChangeType#ENDED} event of the operation.
+     *
+     * @param interval The minimum time between two change events of the same operation, or {@code 0} to use only the
+     *            step threshold.
+     * @param unit The unit of {@code interval}.
+     * @param stepThreshold The amount of steps after which the change event is emitted regardless of the interval, or
+     *            {@code 0} to use only the interval.
+     * @return This object.
+     */
+    public StatusInfoSettings setChangeCoalescing( long interval, TimeUnit unit, int stepThreshold )
+    {
+        NullArgumentException.validateNotNull( "Time unit", unit );
+        if( interval < 0L || stepThreshold < 0 )
+        {
+            throw new IllegalArgumentException( "Interval and step threshold must not be negative." );
+        }
+
+        this._coalescingIntervalNanos = unit.toNanos( interval );
+        this._coalescingStepThreshold = stepThreshold;
+        return this;
+    }
+
+    /**
+     * Sets the generator for operation IDs and receipts. The default generator of the implementation is cheap and
+     * scales well, but its values are predictable.
+     *
+     * @param idGenerator The generator, or {@code null} to use the default generator of the implementation.
+     * @return This object.
+     */
+    public StatusInfoSettings setIDGenerator( OperationIDGenerator idGenerator )
+    {
+        this._idGenerator = idGenerator;
+        return this;
+    }
+
+    /**
+     * Controls whether receipts are random UUIDs which can not be guessed, regardless of the ID generator. Use this
+     * when receipts are handed out to parties which must not be able to end or update operations of others.
+     *
+     * @param secureReceipts Whether to use secure receipts.
+     * @return This object.
+     */
+    public StatusInfoSettings setSecureReceipts( boolean secureReceipts )
+    {
+        this._secureReceipts = secureReceipts;
+        return this;
+    }
+
+    /**
+     * Makes the service periodically look for leaked operations in a background thread. An operation has leaked when
+     * the thread it was started for has terminated, or when neither it nor any operation nested within it in the same
+     * thread has been updated for longer than the maximum age given to
+     * {@link #setMaxOperationAge(long, TimeUnit)}.
+     *
+     * @param period The time between two runs of the reaper, or {@code 0} to disable reaping.
+     * @param unit The unit of {@code period}.
+     * @param budget The maximum amount of threads inspected during a single run. Remaining threads are inspected
+     *            during the next runs.
+     * @param action What to do with leaked operations.
+     * @return This object.
+     */
+    public StatusInfoSettings setReaping( long period, TimeUnit unit, int budget, LeakAction action )
+    {
+        NullArgumentException.validateNotNull( "Time unit", unit );
+        NullArgumentException.validateNotNull( "Leak action", action );
+        if( period < 0L )
+        {
+            throw new IllegalArgumentException( "The period must not be negative." );
+        }
+        if( budget < 1 )
+        {
+            throw new IllegalArgumentException( "The budget must be at least 1." );
+        }
+
+        this._reaperPeriodNanos = unit.toNanos( period );
+        this._reaperBudget = budget;
+        this._leakAction = action;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time an operation may stay without updates before the reaper considers it leaked. Has no effect
+     * unless reaping is enabled.
+     *
+     * @param maxAge The maximum age, or {@code 0} to consider only operations of terminated threads leaked.
+     * @param unit The unit of {@code maxAge}.
+     * @return This object.
+     */
+    public StatusInfoSettings setMaxOperationAge( long maxAge, TimeUnit unit )
+    {
+        NullArgumentException.validateNotNull( "Time unit", unit );
+        if( maxAge < 0L )
+        {
+            throw new IllegalArgumentException( "The maximum age must not be negative." );
+        }
+
+        this._maxOperationAgeNanos = unit.toNanos( maxAge );
+        return this;
+    }
+
+    /**
+     * Controls whether the stack trace of the code starting each operation is recorded, so that leak reports can show
+     * where leaked operations were started. Recording the stack trace makes starting operations considerably slower.
+     *
+     * @param recordingCreationSites Whether to record creation sites.
+     * @return This object.
+     */
+    public StatusInfoSettings setRecordingCreationSites( boolean recordingCreationSites )
+    {
+        this._recordingCreationSites = recordingCreationSites;
+        return this;
+    }
+
+    /**
+     * Sets the clock used for timing operations, coalescing changes and reaping. The default clock of the
+     * implementation reads {@link System#nanoTime()}.
+     *
+     * @param clock The clock, or {@code null} to use the default clock of the implementation.
+     * @return This object.
+     */
+    public StatusInfoSettings setClock( Clock clock )
+    {
+        this._clock = clock;
+        return this;
+    }
+
+    /**
+     * Makes the service read the clock only periodically in a background thread, instead of every time the time is
+     * needed. Times of operations will then be behind by at most the given resolution.
+     *
+     * @param resolution The time between two reads of the clock, or {@code 0} to read the clock every time.
+     * @param unit The unit of {@code resolution}.
+     * @return This object.
+     */
+    public StatusInfoSettings setClockResolution( long resolution, TimeUnit unit )
+    {
+        NullArgumentException.validateNotNull( "Time unit", unit );
+        if( resolution < 0L )
+        {
+            throw new IllegalArgumentException( "The resolution must not be negative." );
+        }
+
+        this._clockResolutionNanos = unit.toNanos( resolution );
+        return this;
+    }
+
+    /**
+     * Controls whether start, update and end times of operations are recorded. When disabled, the time methods of
+     * {@link org.statusinfo.api.StatusInfo} return {@link org.statusinfo.api.StatusInfo#NO_TIME}, unless the times
+     * are needed for reaping operations without updates.
+     *
+     * @param timing Whether to record times of operations.
+     * @return This object.
+     */
+    public StatusInfoSettings setTiming( boolean timing )
+    {
+        this._timing = timing;
+        return this;
+    }
+
+    /**
+     * Controls whether the service keeps statistics of operations by their name, see
+     * {@link org.statusinfo.api.OperationMetrics}. Statistics of a name are kept for as long as the service is active,
+     * so operation names should come from a bounded set.
+     *
+     * @param collectingMetrics Whether to collect metrics.
+     * @return This object.
+     */
+    public StatusInfoSettings setCollectingMetrics( boolean collectingMetrics )
+    {
+        this._collectingMetrics = collectingMetrics;
+        return this;
+    }
+
+    /**
+     * Sets which operations with given name are tracked. Only applies to operations run by {@code performOperation}
+     * of {@link org.statusinfo.api.StatusInfoService}; operations started by other means can be addressed by their
+     * receipt, and are thus always tracked.
+     *
+     * @param operationName The name of the operations.
+     * @param policy The tracking policy, or {@code null} to track every operation.
+     * @return This object.
+     */
+    public StatusInfoSettings setTrackingPolicy( String operationName, TrackingPolicy policy )
+    {
+        NullArgumentException.validateNotNull( "Operation name", operationName );
+        if( policy == null )
+        {
+            this._trackingPolicies.remove( operationName );
+        }
+        else
+        {
+            this._trackingPolicies.put( operationName, policy );
+        }
+        return this;
+    }
+
+    /**
+     * Sets the verbosity of the service, see {@link TrackingPolicy#atVerbosity(int)}. The default verbosity is
+     * {@code 0}.
+     *
+     * @param verbosity The verbosity.
+     * @return This object.
+     */
+    public StatusInfoSettings setVerbosity( int verbosity )
+    {
+        this._verbosity = verbosity;
+        return this;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api.bootstrap;
+
+/**
+ * Decides which operations with a certain name are tracked, see
+ * {@link StatusInfoSettings#setTrackingPolicy(String, TrackingPolicy)}. Operations which are not tracked are not
+ * visible in snapshots and do not cause events; operations started within them are seen as children of the nearest
+ * tracked operation. They still count in the started, completed and failed counts of
+ * {@link org.statusinfo.api.OperationMetrics}, but not in its latencies.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public final class TrackingPolicy
+{
+    /**
+     * Track every operation. This is the policy of operation names without a policy of their own.
+     */
+    public static final TrackingPolicy ALWAYS = new TrackingPolicy( 1, 0 );
+
+    /**
+     * Never track the operations.
+     */
+    public static final TrackingPolicy NEVER = new TrackingPolicy( 0, 0 );
+
+    private final int _sampleInterval;
+    private final int _minimumVerbosity;
+
+    private TrackingPolicy( int sampleInterval, int minimumVerbosity )
+    {
+        this._sampleInterval = sampleInterval;
+        this._minimumVerbosity = minimumVerbosity;
+    }
+
+    /**
+     * Returns the policy which tracks one operation out of given amount. Each thread counts its operations separately,
+     * tracking a random one of its first {@code oneIn} operations and every {@code oneIn}th operation after that.
+     * 
+     * @param oneIn How many operations there are for each tracked one.
+     * @return The policy which tracks one operation out of {@code oneIn}.
+     */
+    public static TrackingPolicy sampled( int oneIn )
+    {
+        if( oneIn < 1 )
+        {
+            throw new IllegalArgumentException( "Sample interval must be at least 1." );
+        }
+        return new TrackingPolicy( oneIn, 0 );
+    }
+
+    /**
+     * Returns the policy which tracks every operation if the verbosity of the service is at least given level, and no
+     * operations otherwise.
+     * 
+     * @param minimumVerbosity The lowest verbosity at which the operations are tracked.
+     * @return The policy which tracks operations only at given verbosity and above.
+     * @see StatusInfoSettings#setVerbosity(int)
+     */
+    public static TrackingPolicy atVerbosity( int minimumVerbosity )
+    {
+        return new TrackingPolicy( 1, minimumVerbosity );
+    }
+
+    /**
+     * Returns how many operations there are for each tracked one.
+     * 
+     * @return How many operations there are for each tracked one, or {@code 0} if no operations are tracked.
+     */
+    public int getSampleInterval()
+    {
+        return this._sampleInterval;
+    }
+
+    public int getMinimumVerbosity()
+    {
+        return this._minimumVerbosity;
+    }
+}
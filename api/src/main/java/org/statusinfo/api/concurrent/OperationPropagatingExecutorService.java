@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.qi4j.api.util.NullArgumentException;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfoService;
+
+/**
+ * {@link ExecutorService} which runs each task as a sub-operation of the operation which was current in the submitting
+ * thread. The sub-operation is started in the worker thread when the task begins, and ended when the task completes,
+ * whether normally or not. Tasks submitted while there is no current operation are passed to the decorated executor
+ * as they are, so they cost nothing extra. Only the receipt of the current operation is captured on submission; if
+ * the operation has ended by the time the task runs, the task runs as a new top-level operation instead.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public class OperationPropagatingExecutorService
+    implements ExecutorService
+{
+    private static final class PropagatingRunnable
+        implements Runnable
+    {
+        private final StatusInfoService _service;
+        private final String _parentReceipt;
+        private final String _operationName;
+        private final Runnable _task;
+
+        private PropagatingRunnable( StatusInfoService service, String parentReceipt, String operationName,
+            Runnable task )
+        {
+            this._service = service;
+            this._parentReceipt = parentReceipt;
+            this._operationName = operationName;
+            this._task = task;
+        }
+
+        @Override
+        public void run()
+        {
+            String receipt = this._service.startSubOperation( this._parentReceipt, this._operationName ).getReceipt();
+            try
+            {
+                this._task.run();
+            }
+            finally
+            {
+                this._service.endOperation( receipt );
+            }
+        }
+    }
+
+    private static final class PropagatingCallable<T>
+        implements Callable<T>
+    {
+        private final StatusInfoService _service;
+        private final String _parentReceipt;
+        private final String _operationName;
+        private final Callable<T> _task;
+
+        private PropagatingCallable( StatusInfoService service, String parentReceipt, String operationName,
+            Callable<T> task )
+        {
+            this._service = service;
+            this._parentReceipt = parentReceipt;
+            this._operationName = operationName;
+            this._task = task;
+        }
+
+        @Override
+        public T call()
+            throws Exception
+        {
+            String receipt = this._service.startSubOperation( this._parentReceipt, this._operationName ).getReceipt();
+            try
+            {
+                return this._task.call();
+            }
+            finally
+            {
+                this._service.endOperation( receipt );
+            }
+        }
+    }
+
+    private final StatusInfoService _service;
+    private final ExecutorService _executor;
+    private final String _operationName;
+
+    /**
+     * Creates a new decorator.
+     * 
+     * @param service The service to start and end the operations of tasks with.
+     * @param executor The executor to run the tasks.
+     * @param operationName The name of the operation of each task.
+     */
+    public OperationPropagatingExecutorService( StatusInfoService service, ExecutorService executor,
+        String operationName )
+    {
+        NullArgumentException.validateNotNull( "Service", service );
+        NullArgumentException.validateNotNull( "Executor", executor );
+        NullArgumentException.validateNotNull( "Operation name", operationName );
+        this._service = service;
+        this._executor = executor;
+        this._operationName = operationName;
+    }
+
+    @Override
+    public void execute( Runnable command )
+    {
+        this._executor.execute( this.wrap( command ) );
+    }
+
+    @Override
+    public Future<?> submit( Runnable task )
+    {
+        return this._executor.submit( this.wrap( task ) );
+    }
+
+    @Override
+    public <T> Future<T> submit( Runnable task, T result )
+    {
+        return this._executor.submit( this.wrap( task ), result );
+    }
+
+    @Override
+    public <T> Future<T> submit( Callable<T> task )
+    {
+        return this._executor.submit( this.wrap( task ) );
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll( Collection<? extends Callable<T>> tasks )
+        throws InterruptedException
+    {
+        return this._executor.invokeAll( this.wrapAll( tasks ) );
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll( Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit )
+        throws InterruptedException
+    {
+        return this._executor.invokeAll( this.wrapAll( tasks ), timeout, unit );
+    }
+
+    @Override
+    public <T> T invokeAny( Collection<? extends Callable<T>> tasks )
+        throws InterruptedException, ExecutionException
+    {
+        return this._executor.invokeAny( this.wrapAll( tasks ) );
+    }
+
+    @Override
+    public <T> T invokeAny( Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit )
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        return this._executor.invokeAny( this.wrapAll( tasks ), timeout, unit );
+    }
+
+    @Override
+    public void shutdown()
+    {
+        this._executor.shutdown();
+    }
+
+    /**
+     * Attempts to stop all tasks, like {@link ExecutorService#shutdownNow()} of the decorated executor. Tasks which
+     * were passed to {@link #execute(Runnable)} are returned as they were given, not as the wrappers which start their
+     * operations.
+     * 
+     * @return The tasks which never began executing.
+     */
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        List<Runnable> result = this._executor.shutdownNow();
+        for( int idx = 0; idx < result.size(); ++idx )
+        {
+            if( result.get( idx ) instanceof PropagatingRunnable )
+            {
+                result.set( idx, ((PropagatingRunnable) result.get( idx ))._task );
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        return this._executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return this._executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination( long timeout, TimeUnit unit )
+        throws InterruptedException
+    {
+        return this._executor.awaitTermination( timeout, unit );
+    }
+
+    /**
+     * Wraps given task, so that it runs as a sub-operation of the current operation of the current thread.
+     * 
+     * @param task The task to wrap.
+     * @return The wrapped task, or given task if there is no current operation.
+     */
+    protected Runnable wrap( Runnable task )
+    {
+        NullArgumentException.validateNotNull( "Task", task );
+        OperationCreationResult current = this._service.getCurrentOperation();
+        return current == null ? task : new PropagatingRunnable( this._service, current.getReceipt(),
+            this._operationName, task );
+    }
+
+    /**
+     * Wraps given task, so that it runs as a sub-operation of the current operation of the current thread.
+     * 
+     * @param task The task to wrap.
+     * @return The wrapped task, or given task if there is no current operation.
+     */
+    protected <T> Callable<T> wrap( Callable<T> task )
+    {
+        NullArgumentException.validateNotNull( "Task", task );
+        OperationCreationResult current = this._service.getCurrentOperation();
+        return current == null ? task : new PropagatingCallable<T>( this._service, current.getReceipt(),
+            this._operationName, task );
+    }
+
+    private <T> Collection<? extends Callable<T>> wrapAll( Collection<? extends Callable<T>> tasks )
+    {
+        Collection<? extends Callable<T>> result = tasks;
+        OperationCreationResult current = this._service.getCurrentOperation();
+        if( current != null )
+        {
+            List<Callable<T>> wrapped = new ArrayList<Callable<T>>( tasks.size() );
+            for( Callable<T> task : tasks )
+            {
+                NullArgumentException.validateNotNull( "Task", task );
+                wrapped.add( new PropagatingCallable<T>( this._service, current.getReceipt(), this._operationName,
+                    task ) );
+            }
+            result = wrapped;
+        }
+        return result;
+    }
+}
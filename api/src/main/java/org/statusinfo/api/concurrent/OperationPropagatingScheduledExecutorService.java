@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.statusinfo.api.StatusInfoService;
+
+/**
+ * {@link ScheduledExecutorService} version of {@link OperationPropagatingExecutorService}. Each run of a periodic task
+ * is a separate sub-operation of the operation which was current when the task was scheduled.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public class OperationPropagatingScheduledExecutorService extends OperationPropagatingExecutorService
+    implements ScheduledExecutorService
+{
+    private final ScheduledExecutorService _executor;
+
+    /**
+     * Creates a new decorator.
+     * 
+     * @param service The service to start and end the operations of tasks with.
+     * @param executor The executor to run the tasks.
+     * @param operationName The name of the operation of each task.
+     */
+    public OperationPropagatingScheduledExecutorService( StatusInfoService service, ScheduledExecutorService executor,
+        String operationName )
+    {
+        super( service, executor, operationName );
+        this._executor = executor;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule( Runnable command, long delay, TimeUnit unit )
+    {
+        return this._executor.schedule( this.wrap( command ), delay, unit );
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule( Callable<V> callable, long delay, TimeUnit unit )
+    {
+        return this._executor.schedule( this.wrap( callable ), delay, unit );
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate( Runnable command, long initialDelay, long period, TimeUnit unit )
+    {
+        return this._executor.scheduleAtFixedRate( this.wrap( command ), initialDelay, period, unit );
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay( Runnable command, long initialDelay, long delay, TimeUnit unit )
+    {
+        return this._executor.scheduleWithFixedDelay( this.wrap( command ), initialDelay, delay, unit );
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api.concurrent;
+
+import java.util.concurrent.ForkJoinTask;
+
+import org.qi4j.api.util.NullArgumentException;
+import org.statusinfo.api.OperationHandle;
+import org.statusinfo.api.StatusInfoService;
+
+/**
+ * {@link ForkJoinTask} which runs another task as a sub-operation of given operation, in the worker thread which
+ * executes it. This is meant for the top-level splits of fork/join work, so that they are visible in snapshots; the
+ * leaf tasks should rather add their steps directly to the parent operation via {@link OperationHandle#update(int)}.
+ * The parent operation should be started with {@link StatusInfoService#startSharedOperation(String, int)}, so that
+ * the updates from many threads do not contend.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public class SubOperationForkJoinTask<V> extends ForkJoinTask<V>
+{
+    private final OperationHandle _parent;
+    private final String _name;
+    private final ForkJoinTask<V> _task;
+    private V _result;
+
+    /**
+     * Creates a new task.
+     * 
+     * @param parent The operation which the sub-operation belongs to.
+     * @param name The name of the sub-operation.
+     * @param task The task to run as the sub-operation.
+     */
+    public SubOperationForkJoinTask( OperationHandle parent, String name, ForkJoinTask<V> task )
+    {
+        NullArgumentException.validateNotNull( "Parent operation", parent );
+        NullArgumentException.validateNotNull( "Name", name );
+        NullArgumentException.validateNotNull( "Task", task );
+        this._parent = parent;
+        this._name = name;
+        this._task = task;
+        this._result = null;
+    }
+
+    @Override
+    public V getRawResult()
+    {
+        return this._result;
+    }
+
+    @Override
+    protected void setRawResult( V value )
+    {
+        this._result = value;
+    }
+
+    @Override
+    protected boolean exec()
+    {
+        OperationHandle operation = this._parent.subOperation( this._name );
+        try
+        {
+            this._result = this._task.invoke();
+        }
+        finally
+        {
+            operation.end();
+        }
+        return true;
+    }
+}
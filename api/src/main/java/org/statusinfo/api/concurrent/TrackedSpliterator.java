@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.api.concurrent;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import org.qi4j.api.util.NullArgumentException;
+import org.statusinfo.api.NoOperationInProgressException;
+import org.statusinfo.api.OperationHandle;
+import org.statusinfo.api.StatusInfoService;
+
+/**
+ * {@link Spliterator} which adds a step to an operation for each traversed element, e.g. for tracking the progress of
+ * a parallel stream. The splits share the operation, so that worker threads do not need operations of their own. The
+ * steps are added in chunks, and the remaining steps once the elements run out or the spliterator is split.
+ * Short-circuiting traversals may stop at any element without telling the spliterator, so after them the steps of the
+ * last chunk are only added by {@link #flush()}. Steps of elements traversed after the operation has ended are not
+ * added anywhere. The operation should be started with {@link StatusInfoService#startSharedOperation(String, int)}, so
+ * that the updates from many threads do not contend.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+public class TrackedSpliterator<T>
+    implements Spliterator<T>
+{
+    private static final int STEPS_PER_UPDATE = 64;
+
+    private final Spliterator<T> _spliterator;
+    private final OperationHandle _operation;
+
+    // A spliterator is traversed by one thread at a time
+    private int _pendingSteps;
+
+    /**
+     * Creates a new tracked spliterator.
+     * 
+     * @param spliterator The spliterator to traverse.
+     * @param operation The operation to add the steps to.
+     */
+    public TrackedSpliterator( Spliterator<T> spliterator, OperationHandle operation )
+    {
+        NullArgumentException.validateNotNull( "Spliterator", spliterator );
+        NullArgumentException.validateNotNull( "Operation", operation );
+        this._spliterator = spliterator;
+        this._operation = operation;
+        this._pendingSteps = 0;
+    }
+
+    @Override
+    public boolean tryAdvance( Consumer<? super T> action )
+    {
+        boolean result = this._spliterator.tryAdvance( action );
+        if( !result || ++this._pendingSteps >= STEPS_PER_UPDATE )
+        {
+            this.flush();
+        }
+        return result;
+    }
+
+    @Override
+    public void forEachRemaining( final Consumer<? super T> action )
+    {
+        try
+        {
+            this._spliterator.forEachRemaining( new Consumer<T>()
+            {
+                @Override
+                public void accept( T element )
+                {
+                    action.accept( element );
+                    if( ++TrackedSpliterator.this._pendingSteps >= STEPS_PER_UPDATE )
+                    {
+                        TrackedSpliterator.this.flush();
+                    }
+                }
+            } );
+        }
+        finally
+        {
+            // The action may throw, the elements traversed so far still count
+            this.flush();
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit()
+    {
+        // The split may be traversed in another thread, and this one never again
+        this.flush();
+        Spliterator<T> split = this._spliterator.trySplit();
+        return split == null ? null : new TrackedSpliterator<T>( split, this._operation );
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        return this._spliterator.estimateSize();
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return this._spliterator.characteristics();
+    }
+
+    @Override
+    public Comparator<? super T> getComparator()
+    {
+        return this._spliterator.getComparator();
+    }
+
+    /**
+     * Adds the steps of the elements traversed so far, which have not been added yet. Must be called by the thread
+     * which traversed this spliterator, e.g. after a short-circuiting traversal.
+     */
+    public void flush()
+    {
+        if( this._pendingSteps > 0 )
+        {
+            int steps = this._pendingSteps;
+            this._pendingSteps = 0;
+            try
+            {
+                this._operation.update( steps );
+            }
+            catch( NoOperationInProgressException nopie )
+            {
+                // Operation was ended while its elements were still being traversed, nothing to add the steps to
+            }
+        }
+    }
+}
@@ -16,14 +16,19 @@ package org.statusinfo.api.skeletons;
 
 import org.qi4j.api.util.NullArgumentException;
 import org.statusinfo.api.StatusInfo;
-import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.ThreadBoundStatusInfoListener;
 
 /**
+ * Listener skeleton which is only interested in the operations of a single thread. Being a
+ * {@link ThreadBoundStatusInfoListener}, it is only consulted about the operations of that thread, so subclasses
+ * overriding {@link #isInterestedInStatusInfo(StatusInfo)} can only narrow the events further. Subclasses which used to
+ * override it to accept operations of other threads too must also override {@link #getListenedThread()} to return
+ * {@code null}, so that they are consulted about the operations of all threads again.
  * 
  * @author 2011 Stanislav Muhametsin
  */
 public abstract class CurrentThreadStatusInfoListenerSkeleton
-    implements StatusInfoListener
+    implements ThreadBoundStatusInfoListener
 {
 
     private final Thread _thread;
@@ -39,6 +44,12 @@ public abstract class CurrentThreadStatusInfoListenerSkeleton
         this._thread = thread;
     }
 
+    @Override
+    public Thread getListenedThread()
+    {
+        return this._thread;
+    }
+
     @Override
     public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
     {
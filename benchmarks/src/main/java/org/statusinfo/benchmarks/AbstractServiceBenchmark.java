@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.StatusInfoService;
+import org.statusinfo.implementation.StatusInfoServiceImpl;
+
+/**
+ * Common state of all benchmarks: a single service instance, shared by all benchmark threads. The service is created
+ * and activated directly, without assembling an application, so that only the service itself is measured.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+@State( Scope.Benchmark )
+public abstract class AbstractServiceBenchmark
+{
+    public static final String OPERATION_NAME = "Benchmarked operation.";
+
+    private StatusInfoServiceImpl _service;
+
+    @Setup( Level.Trial )
+    public void setUpService()
+        throws Exception
+    {
+        this._service = new StatusInfoServiceImpl();
+        this._service.activate();
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDownService()
+        throws Exception
+    {
+        this._service.passivate();
+        this._service = null;
+    }
+
+    protected StatusInfoService getStatusInfo()
+    {
+        return this._service;
+    }
+
+    protected void addListeners( int amount )
+    {
+        for( int idx = 0; idx < amount; ++idx )
+        {
+            this._service.addStatusInfoListener( new StatusInfoListener()
+            {
+
+                @Override
+                public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+                {
+                }
+
+                @Override
+                public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+                {
+                    return true;
+                }
+            } );
+        }
+    }
+}
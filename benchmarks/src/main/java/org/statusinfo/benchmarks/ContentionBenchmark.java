@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.statusinfo.api.OperationHandle;
+
+/**
+ * Benchmarks of several threads using the same service at once. Each thread starts, updates and ends its own
+ * operations, or updates an operation shared by all threads. The thread counts are fixed by annotations, use the
+ * {@code -t} option of JMH to try other counts.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ContentionBenchmark extends AbstractServiceBenchmark
+{
+    @Param(
+    {
+        "0",
+        "1"
+    } )
+    public int listeners;
+
+    private OperationHandle _sharedOperation;
+
+    @Setup
+    public void setUpOperation()
+    {
+        this.addListeners( this.listeners );
+        this._sharedOperation = this.getStatusInfo().startSharedOperation( OPERATION_NAME, Integer.MAX_VALUE );
+    }
+
+    @TearDown
+    public void tearDownOperation()
+    {
+        this._sharedOperation.end();
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public boolean ownOperations1()
+    {
+        return this.ownOperation();
+    }
+
+    @Benchmark
+    @Threads( 2 )
+    public boolean ownOperations2()
+    {
+        return this.ownOperation();
+    }
+
+    @Benchmark
+    @Threads( 4 )
+    public boolean ownOperations4()
+    {
+        return this.ownOperation();
+    }
+
+    @Benchmark
+    @Threads( Threads.MAX )
+    public boolean ownOperationsMax()
+    {
+        return this.ownOperation();
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public void sharedOperation1()
+    {
+        this.getStatusInfo().updateOperation( this._sharedOperation.getReceipt(), 1 );
+    }
+
+    @Benchmark
+    @Threads( 2 )
+    public void sharedOperation2()
+    {
+        this.getStatusInfo().updateOperation( this._sharedOperation.getReceipt(), 1 );
+    }
+
+    @Benchmark
+    @Threads( 4 )
+    public void sharedOperation4()
+    {
+        this.getStatusInfo().updateOperation( this._sharedOperation.getReceipt(), 1 );
+    }
+
+    @Benchmark
+    @Threads( Threads.MAX )
+    public void sharedOperationMax()
+    {
+        this.getStatusInfo().updateOperation( this._sharedOperation.getReceipt(), 1 );
+    }
+
+    private boolean ownOperation()
+    {
+        OperationHandle handle = this.getStatusInfo().startOperationWithHandle( OPERATION_NAME );
+        handle.update( 1 );
+        return handle.end();
+    }
+}
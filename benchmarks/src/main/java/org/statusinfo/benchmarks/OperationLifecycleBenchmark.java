@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfoService.Operation;
+
+/**
+ * Benchmarks of starting and ending operations in a single thread.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class OperationLifecycleBenchmark extends AbstractServiceBenchmark
+{
+    @Param(
+    {
+        "0",
+        "1",
+        "8"
+    } )
+    public int listeners;
+
+    public static final int NESTING_DEPTH = 4;
+
+    @Setup
+    public void setUpListeners()
+    {
+        this.addListeners( this.listeners );
+    }
+
+    @Benchmark
+    public boolean startAndEndOperation()
+    {
+        OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+        return this.getStatusInfo().endOperation( creation.getReceipt() );
+    }
+
+    @Benchmark
+    public Integer nestedPerformOperation()
+    {
+        return this.perform( NESTING_DEPTH );
+    }
+
+    private Integer perform( final int remaining )
+    {
+        return this.getStatusInfo().performOperation( OPERATION_NAME, new Operation<Integer, RuntimeException>()
+        {
+            @Override
+            public Integer doOperation()
+            {
+                return remaining <= 1 ? remaining : perform( remaining - 1 );
+            }
+        } );
+    }
+}
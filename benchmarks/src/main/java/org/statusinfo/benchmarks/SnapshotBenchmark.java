@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.statusinfo.api.OperationSnapshot;
+
+/**
+ * Benchmarks of taking snapshots with varying amount of operations in progress. The operations are spread over
+ * threads which are never started, each thread having a stack of at most {@link #MAX_DEPTH} operations.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SnapshotBenchmark extends AbstractServiceBenchmark
+{
+    public static final int MAX_DEPTH = 10;
+
+    @Param(
+    {
+        "10",
+        "1000",
+        "100000"
+    } )
+    public int operationsInProgress;
+
+    @Setup
+    public void setUpOperations()
+    {
+        Thread thread = null;
+        for( int idx = 0; idx < this.operationsInProgress; ++idx )
+        {
+            if( idx % MAX_DEPTH == 0 )
+            {
+                thread = new Thread( "Snapshot benchmark thread " + idx / MAX_DEPTH );
+            }
+            this.getStatusInfo().startOperation( thread, OPERATION_NAME );
+        }
+    }
+
+    @Benchmark
+    public OperationSnapshot getSnapshotOfCurrentState()
+    {
+        return this.getStatusInfo().getSnapshotOfCurrentState();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfoService;
+
+/**
+ * Benchmarks of updating the current operation of the benchmark thread, with varying amount of listeners and of
+ * other threads with operations in progress. The other threads are never started, each of them has a stack of
+ * {@link #OTHER_THREAD_DEPTH} operations.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class UpdateOperationBenchmark extends AbstractServiceBenchmark
+{
+    public static final int OTHER_THREAD_DEPTH = 3;
+
+    @Param(
+    {
+        "0",
+        "1",
+        "8"
+    } )
+    public int listeners;
+
+    @Param(
+    {
+        "0",
+        "4000"
+    } )
+    public int otherThreads;
+
+    /**
+     * The operation of the benchmark thread. Being thread-scoped, it is started in the thread running the benchmark.
+     */
+    @State( Scope.Thread )
+    public static class ThreadOperation
+    {
+        private StatusInfoService _statusInfo;
+        private OperationCreationResult _operation;
+
+        @Setup
+        public void setUpOperation( UpdateOperationBenchmark benchmark )
+        {
+            this._statusInfo = benchmark.getStatusInfo();
+            this._operation = this._statusInfo.startOperation( OPERATION_NAME );
+        }
+
+        @TearDown
+        public void tearDownOperation()
+        {
+            this._statusInfo.endOperation( this._operation.getReceipt() );
+        }
+    }
+
+    @Setup
+    public void setUpListeners()
+    {
+        this.addListeners( this.listeners );
+    }
+
+    @Setup
+    public void setUpOtherThreads()
+    {
+        for( int idx = 0; idx < this.otherThreads; ++idx )
+        {
+            Thread thread = new Thread( "Update benchmark thread " + idx );
+            for( int depth = 0; depth < OTHER_THREAD_DEPTH; ++depth )
+            {
+                this.getStatusInfo().startOperation( thread, OPERATION_NAME );
+            }
+        }
+    }
+
+    @Benchmark
+    public void updateCurrentOperation( ThreadOperation operation )
+    {
+        this.getStatusInfo().updateCurrentOperation( 1 );
+    }
+
+    @Benchmark
+    public void updateOperationByReceipt( ThreadOperation operation )
+    {
+        this.getStatusInfo().updateOperation( operation._operation.getReceipt(), 1 );
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Base class for objects with a tiny, non-reentrant lock. The lock is a single field updated with CAS, so it costs no
+ * extra objects, and waiting for it never pins the carrier thread of a virtual thread the way {@code synchronized}
+ * does. It is meant only for critical sections of a few field writes, where spinning is cheaper than parking.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+abstract class AbstractSpinLockable
+{
+    private static final AtomicIntegerFieldUpdater<AbstractSpinLockable> LOCK_UPDATER = AtomicIntegerFieldUpdater
+        .newUpdater( AbstractSpinLockable.class, "_locked" );
+
+    // Yield the processor after this many failed attempts, so that a descheduled owner can finish
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    // 1 when locked
+    private volatile int _locked;
+
+    protected final void lock()
+    {
+        int spins = 0;
+        while( this._locked != 0 || !LOCK_UPDATER.compareAndSet( this, 0, 1 ) )
+        {
+            if( ++spins >= SPINS_BEFORE_YIELD )
+            {
+                Thread.yield();
+            }
+        }
+    }
+
+    protected final void unlock()
+    {
+        LOCK_UPDATER.set( this, 0 );
+    }
+}
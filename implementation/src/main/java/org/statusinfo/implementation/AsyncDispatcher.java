@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.qi4j.api.util.NullArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+import org.statusinfo.api.bootstrap.StatusInfoSettings.OverflowPolicy;
+import org.statusinfo.api.bootstrap.StatusInfoSettings.WaitPolicy;
+
+/**
+ * Delivers events in dedicated threads. Each thread has its own bounded ring buffer with preallocated event slots, so
+ * publishing an event only claims a slot and fills it. Events with the same key always go to the same ring buffer,
+ * and thus are handled in the order they were published.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class AsyncDispatcher<T>
+{
+    interface EventHandler<T>
+    {
+        void handle( T subject, ChangeType type, int stepsAdded );
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( AsyncDispatcher.class );
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos( 100 );
+    // Safety net in case a wake-up is missed
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos( 10 );
+
+    // Lets rings recognize publishers which must not wait for room
+    private static final class DispatcherThread
+        extends Thread
+    {
+        private DispatcherThread( Runnable ring, String name )
+        {
+            super( ring, name );
+        }
+    }
+
+    private static final class Event<T>
+    {
+        private T _subject;
+        private ChangeType _type;
+        private int _stepsAdded;
+    }
+
+    private static final class EventRing<T>
+        implements Runnable
+    {
+        private final Event<T>[] _events;
+        private final int _mask;
+
+        // Sequence of the event in each slot, once it is fully written
+        private final AtomicLongArray _published;
+
+        // Next sequence to be claimed by publishers
+        private final AtomicLong _claimed;
+
+        // Next sequence to be handled by the dispatcher thread
+        private volatile long _consumed;
+
+        private final EventHandler<T> _handler;
+        private final WaitPolicy _waitPolicy;
+        private final OverflowPolicy _overflowPolicy;
+        private final AtomicLong _dropped;
+
+        private volatile boolean _running;
+        private volatile boolean _waiting;
+        private volatile Thread _thread;
+
+        @SuppressWarnings( "unchecked" )
+        private EventRing( int capacity, EventHandler<T> handler, WaitPolicy waitPolicy, OverflowPolicy overflowPolicy )
+        {
+            this._events = new Event[capacity];
+            this._published = new AtomicLongArray( capacity );
+            for( int idx = 0; idx < capacity; ++idx )
+            {
+                this._events[idx] = new Event<T>();
+                this._published.set( idx, -1L );
+            }
+            this._mask = capacity - 1;
+            this._claimed = new AtomicLong();
+            this._consumed = 0L;
+            this._handler = handler;
+            this._waitPolicy = waitPolicy;
+            this._overflowPolicy = overflowPolicy;
+            this._dropped = new AtomicLong();
+            this._running = true;
+            this._waiting = false;
+        }
+
+        private boolean publish( T subject, ChangeType type, int stepsAdded )
+        {
+            long sequence = 0L;
+            boolean claimed = false;
+            int tries = 0;
+            while( !claimed )
+            {
+                sequence = this._claimed.get();
+                if( sequence - this._consumed >= this._events.length )
+                {
+                    // Listeners publishing from a dispatcher thread would wait for their own thread, or for another
+                    // dispatcher thread possibly waiting for them
+                    if( !this._running || this._overflowPolicy == OverflowPolicy.DROP
+                        || (this._overflowPolicy == OverflowPolicy.DROP_CHANGED && type == ChangeType.CHANGED)
+                        || Thread.currentThread() instanceof DispatcherThread )
+                    {
+                        this._dropped.incrementAndGet();
+                        return false;
+                    }
+                    tries = backOff( tries );
+                }
+                else
+                {
+                    claimed = this._claimed.compareAndSet( sequence, sequence + 1 );
+                }
+            }
+
+            int idx = (int) (sequence & this._mask);
+            Event<T> event = this._events[idx];
+            event._subject = subject;
+            event._type = type;
+            event._stepsAdded = stepsAdded;
+            this._published.set( idx, sequence );
+            if( this._waiting )
+            {
+                LockSupport.unpark( this._thread );
+            }
+            return true;
+        }
+
+        @Override
+        public void run()
+        {
+            this._thread = Thread.currentThread();
+            int idle = 0;
+            boolean drained = false;
+            while( !drained )
+            {
+                long next = this._consumed;
+                int idx = (int) (next & this._mask);
+                if( this._published.get( idx ) == next )
+                {
+                    Event<T> event = this._events[idx];
+                    T subject = event._subject;
+                    ChangeType type = event._type;
+                    int stepsAdded = event._stepsAdded;
+                    event._subject = null;
+                    event._type = null;
+
+                    // Free the slot before handling, so that publishers are not kept waiting for slow listeners
+                    this._consumed = next + 1;
+                    try
+                    {
+                        this._handler.handle( subject, type, stepsAdded );
+                    }
+                    catch( Throwable t )
+                    {
+                        LOGGER.warn( "Listener failed to handle " + type + " event of " + subject + ".", t );
+                    }
+                    idle = 0;
+                }
+                else if( !this._running && this._claimed.get() == next )
+                {
+                    drained = true;
+                }
+                else
+                {
+                    idle = this.waitForEvent( idle, idx, next );
+                }
+            }
+        }
+
+        private int waitForEvent( int idle, int idx, long next )
+        {
+            switch( this._waitPolicy )
+            {
+            case BUSY_SPIN:
+                break;
+            case YIELDING:
+                if( idle < SPIN_TRIES )
+                {
+                    ++idle;
+                }
+                else
+                {
+                    Thread.yield();
+                }
+                break;
+            case SLEEPING:
+                if( idle < SPIN_TRIES + YIELD_TRIES )
+                {
+                    if( idle >= SPIN_TRIES )
+                    {
+                        Thread.yield();
+                    }
+                    ++idle;
+                }
+                else
+                {
+                    LockSupport.parkNanos( this, SLEEP_NANOS );
+                }
+                break;
+            case BLOCKING:
+                this._waiting = true;
+                // Re-check after announcing, publishers check the flag after publishing
+                if( this._running && this._published.get( idx ) != next )
+                {
+                    LockSupport.parkNanos( this, MAX_PARK_NANOS );
+                }
+                this._waiting = false;
+                break;
+            }
+            return idle;
+        }
+
+        private void stop()
+        {
+            this._running = false;
+            Thread thread = this._thread;
+            if( thread != null )
+            {
+                LockSupport.unpark( thread );
+            }
+        }
+    }
+
+    private final EventRing<T>[] _rings;
+    private final Thread[] _threads;
+
+    @SuppressWarnings( "unchecked" )
+    AsyncDispatcher( String name, int threadCount, int bufferSize, WaitPolicy waitPolicy,
+        OverflowPolicy overflowPolicy, EventHandler<T> handler )
+    {
+        NullArgumentException.validateNotNull( "Handler", handler );
+
+        int capacity = Integer.highestOneBit( bufferSize );
+        if( capacity < bufferSize )
+        {
+            capacity <<= 1;
+        }
+        this._rings = new EventRing[threadCount];
+        this._threads = new Thread[threadCount];
+        for( int idx = 0; idx < threadCount; ++idx )
+        {
+            this._rings[idx] = new EventRing<T>( capacity, handler, waitPolicy, overflowPolicy );
+            this._threads[idx] = new DispatcherThread( this._rings[idx], name + "-" + idx );
+            this._threads[idx].setDaemon( true );
+        }
+    }
+
+    void start()
+    {
+        for( Thread thread : this._threads )
+        {
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the dispatcher threads after they have handled all the events published so far.
+     *
+     * @throws InterruptedException If interrupted while waiting for the threads to finish.
+     */
+    void stop()
+        throws InterruptedException
+    {
+        for( EventRing<T> ring : this._rings )
+        {
+            ring.stop();
+        }
+        for( Thread thread : this._threads )
+        {
+            thread.join();
+        }
+    }
+
+    /**
+     * Publishes an event. Events with the same key are handled in the order they are published.
+     *
+     * @return {@code true} if the event was published, {@code false} if it was dropped.
+     */
+    boolean publish( int key, T subject, ChangeType type, int stepsAdded )
+    {
+        int hash = key ^ (key >>> 16);
+        return this._rings[(hash & Integer.MAX_VALUE) % this._rings.length].publish( subject, type, stepsAdded );
+    }
+
+    /**
+     * Returns the amount of events dropped so far, because the ring buffer was full or the dispatcher was stopping.
+     *
+     * @return The amount of events dropped so far.
+     */
+    long getAmountOfDroppedEvents()
+    {
+        long result = 0L;
+        for( EventRing<T> ring : this._rings )
+        {
+            result += ring._dropped.get();
+        }
+        return result;
+    }
+
+    private static int backOff( int tries )
+    {
+        if( tries < SPIN_TRIES )
+        {
+            ++tries;
+        }
+        else if( tries < SPIN_TRIES + YIELD_TRIES )
+        {
+            Thread.yield();
+            ++tries;
+        }
+        else
+        {
+            LockSupport.parkNanos( SLEEP_NANOS );
+        }
+        return tries;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.qi4j.api.util.NullArgumentException;
+import org.statusinfo.api.bootstrap.Clock;
+
+/**
+ * {@link Clock} which reads another clock periodically in a dedicated daemon thread, and returns the last value read.
+ * Reading this clock is just a volatile read, at the cost of being behind the actual time by at most the resolution,
+ * plus whatever delays the scheduling of the thread.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class CachedClock
+    implements Clock, Runnable
+{
+    private final Clock _source;
+    private final long _resolutionNanos;
+    private final Thread _thread;
+
+    private volatile long _now;
+    private volatile boolean _running;
+
+    CachedClock( String name, Clock source, long resolutionNanos )
+    {
+        NullArgumentException.validateNotNull( "Source", source );
+
+        this._source = source;
+        this._resolutionNanos = resolutionNanos;
+        this._thread = new Thread( this, name );
+        this._thread.setDaemon( true );
+        this._now = source.nanoTime();
+        this._running = false;
+    }
+
+    @Override
+    public long nanoTime()
+    {
+        return this._now;
+    }
+
+    @Override
+    public void run()
+    {
+        while( this._running )
+        {
+            LockSupport.parkNanos( this._resolutionNanos );
+            this._now = this._source.nanoTime();
+        }
+    }
+
+    void start()
+    {
+        this._running = true;
+        this._thread.start();
+    }
+
+    /**
+     * Stops the thread updating the time. The time returned by this clock will not change anymore.
+     *
+     * @throws InterruptedException If interrupted while waiting for the thread to finish.
+     */
+    void stop()
+        throws InterruptedException
+    {
+        this._running = false;
+        LockSupport.unpark( this._thread );
+        this._thread.join();
+    }
+}
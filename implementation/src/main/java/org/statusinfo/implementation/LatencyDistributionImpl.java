@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statusinfo.implementation;
+
+import org.statusinfo.api.LatencyDistribution;
+
+/**
+ * Immutable snapshot of a {@link StripedHistogram}.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class LatencyDistributionImpl
+    implements LatencyDistribution
+{
+    private final long[] _counts;
+    private final long _count;
+    private final long _sum;
+    private final long _max;
+
+    LatencyDistributionImpl( long[] counts, long count, long sum, long max )
+    {
+        this._counts = counts;
+        this._count = count;
+        this._sum = sum;
+        this._max = max;
+    }
+
+    @Override
+    public long getCount()
+    {
+        return this._count;
+    }
+
+    @Override
+    public double getMean()
+    {
+        return this._count == 0L ? 0.0 : (double) this._sum / this._count;
+    }
+
+    @Override
+    public long getMax()
+    {
+        return this._max;
+    }
+
+    @Override
+    public long getValueAtPercentile( double percentile )
+    {
+        if( percentile < 0.0 || percentile > 100.0 )
+        {
+            throw new IllegalArgumentException( "Percentile must be between 0 and 100." );
+        }
+
+        long result = 0L;
+        if( this._count > 0L )
+        {
+            long target = Math.max( 1L, (long) Math.ceil( percentile / 100.0 * this._count ) );
+            long seen = 0L;
+            int idx = 0;
+            while( seen < target && idx < this._counts.length )
+            {
+                seen += this._counts[idx];
+                ++idx;
+            }
+            // Maximum is exact, while the bucket only gives the upper bound
+            result = Math.min( StripedHistogram.highestValueOf( idx - 1 ), this._max );
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Latencies(count=" + this._count + ",mean=" + (long) this.getMean() + ",p50="
+            + this.getValueAtPercentile( 50.0 ) + ",p99=" + this.getValueAtPercentile( 99.0 ) + ",p999="
+            + this.getValueAtPercentile( 99.9 ) + ",max=" + this._max + ")";
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation;
+
+import java.util.EnumSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.regex.Pattern;
+
+import org.qi4j.api.util.NullArgumentException;
+import org.statusinfo.api.ListenerRegistration;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+import org.statusinfo.api.StatusInfoSubscription;
+import org.statusinfo.api.ThreadBoundStatusInfoListener;
+
+/**
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+final class ListenerRegistrationImpl
+    implements ListenerRegistration
+{
+    private static final AtomicIntegerFieldUpdater<ListenerRegistrationImpl> ACTIVE_UPDATER = AtomicIntegerFieldUpdater
+        .newUpdater( ListenerRegistrationImpl.class, "_active" );
+
+    // Matching results of at most this many distinct operation names are cached per registration
+    private static final int MAX_CACHED_NAMES = 256;
+
+    private final ListenerRegistry _registry;
+    private final StatusInfoListener _listener;
+    private final String _associatedStatusReceipt;
+    // Not null only for thread-bound listeners
+    private final Thread _listenedThread;
+
+    // Bit for each accepted ChangeType ordinal
+    private final int _changeTypes;
+    // Not null only when there are restrictions on operation names
+    private final String _namePrefix;
+    private final Pattern _namePattern;
+    private final ConcurrentMap<String, Boolean> _nameMatches;
+    // Not null only when listening to a subtree of operations
+    private final String _subtreeReceipt;
+
+    // 1 when active, 0 when unregistered
+    private volatile int _active;
+
+    ListenerRegistrationImpl( ListenerRegistry registry, StatusInfoListener listener, String associatedStatusReceipt,
+        StatusInfoSubscription subscription )
+    {
+        NullArgumentException.validateNotNull( "Listener", listener );
+
+        this._registry = registry;
+        this._listener = listener;
+        this._associatedStatusReceipt = associatedStatusReceipt;
+        Thread thread = subscription == null ? null : subscription.getThread();
+        if( thread == null && listener instanceof ThreadBoundStatusInfoListener )
+        {
+            thread = ((ThreadBoundStatusInfoListener) listener).getListenedThread();
+        }
+        this._listenedThread = thread;
+        int changeTypes = 0;
+        for( ChangeType type : subscription == null ? EnumSet.allOf( ChangeType.class ) : subscription
+            .getChangeTypes() )
+        {
+            changeTypes |= 1 << type.ordinal();
+        }
+        this._changeTypes = changeTypes;
+        this._namePrefix = subscription == null ? null : subscription.getNamePrefix();
+        this._namePattern = subscription == null ? null : subscription.getNamePattern();
+        this._nameMatches = this._namePrefix == null && this._namePattern == null ? null
+            : new ConcurrentHashMap<String, Boolean>();
+        this._subtreeReceipt = subscription == null ? null : subscription.getSubtreeReceipt();
+        this._active = 1;
+    }
+
+    @Override
+    public StatusInfoListener getListener()
+    {
+        return this._listener;
+    }
+
+    @Override
+    public boolean isActive()
+    {
+        return this._active == 1;
+    }
+
+    @Override
+    public void unregister()
+    {
+        if( ACTIVE_UPDATER.compareAndSet( this, 1, 0 ) )
+        {
+            this._registry.registrationDeactivated( this );
+        }
+    }
+
+    String getAssociatedStatusReceipt()
+    {
+        return this._associatedStatusReceipt;
+    }
+
+    Thread getListenedThread()
+    {
+        return this._listenedThread;
+    }
+
+    String getSubtreeReceipt()
+    {
+        return this._subtreeReceipt;
+    }
+
+    boolean acceptsChangeType( ChangeType type )
+    {
+        return (this._changeTypes & (1 << type.ordinal())) != 0;
+    }
+
+    // Registrations in the indices of the registry are already matched by thread, but subtree registrations are not
+    boolean acceptsThread( Thread thread )
+    {
+        return this._listenedThread == null || this._listenedThread.equals( thread );
+    }
+
+    boolean acceptsName( String name )
+    {
+        boolean result = this._nameMatches == null;
+        if( !result && name != null )
+        {
+            Boolean cached = this._nameMatches.get( name );
+            if( cached == null )
+            {
+                result = (this._namePrefix == null || name.startsWith( this._namePrefix ))
+                    && (this._namePattern == null || this._namePattern.matcher( name ).matches());
+                if( this._nameMatches.size() < MAX_CACHED_NAMES )
+                {
+                    this._nameMatches.put( name, result );
+                }
+            }
+            else
+            {
+                result = cached;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Listener(" + this._listener + ",receipt=" + this._associatedStatusReceipt + ",active="
+            + this.isActive() + ")";
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+import org.statusinfo.api.StatusInfoSubscription;
+
+/**
+ * Copy-on-write registry of listeners. Readers get an array without locking or copying. New registrations are written
+ * to the free slots at the end of the arrays, and only when there are no free slots left the arrays are copied to
+ * twice as large ones, so that adding stays O(1) amortized. Readers therefore stop at the first {@code null} slot.
+ * Unregistering only marks the registration as inactive; inactive registrations are dropped from the arrays in
+ * batches, so that removal stays O(1) amortized too. Registrations are additionally indexed by their thread and by
+ * the change types they accept, so that notifying about an event only touches the listeners of its thread and type,
+ * and the listeners of its type which are not bound to any thread. Registrations listening to a subtree of operations
+ * are not indexed here, they are kept by the root operation of the subtree.
+ * 
+ * @author 2011 Stanislav Muhametsin
+ */
+final class ListenerRegistry
+{
+    /**
+     * Notified when a registration listening to a subtree of operations is unregistered, so that it can be removed from
+     * the root operation of the subtree.
+     */
+    interface SubtreeListenerRemover
+    {
+        void subtreeListenerUnregistered( ListenerRegistrationImpl registration );
+    }
+
+    private static final ListenerRegistrationImpl[] EMPTY = new ListenerRegistrationImpl[0];
+    private static final ChangeType[] CHANGE_TYPES = ChangeType.values();
+    private static final ListenerRegistrationImpl[][] EMPTY_INDEX = newIndex();
+
+    // Compact at least when this many inactive registrations are in the array
+    private static final int MIN_INACTIVE_FOR_COMPACTION = 16;
+
+    // Capacity of arrays when they first need to grow
+    private static final int MIN_CAPACITY = 4;
+
+    // Only the free slots after the registrations are ever modified, otherwise replaced; written while holding _lock
+    private volatile ListenerRegistrationImpl[] _registrations;
+    // Registrations not bound to any thread, by change type ordinal; same rules apply
+    private volatile ListenerRegistrationImpl[][] _unbound;
+    // Registrations bound to each thread, by change type ordinal; same rules apply
+    private final ConcurrentMap<Thread, ListenerRegistrationImpl[][]> _byThread;
+    private final AtomicInteger _amountOfActive;
+    // Not synchronized, so that virtual threads unregistering listeners do not pin their carrier threads
+    private final Lock _lock;
+    private final AtomicInteger _amountOfInactive;
+    private final SubtreeListenerRemover _subtreeListenerRemover;
+
+    ListenerRegistry( SubtreeListenerRemover subtreeListenerRemover )
+    {
+        this._subtreeListenerRemover = subtreeListenerRemover;
+        this._registrations = EMPTY;
+        this._unbound = EMPTY_INDEX;
+        this._byThread = new ConcurrentHashMap<Thread, ListenerRegistrationImpl[][]>();
+        this._amountOfActive = new AtomicInteger();
+        this._lock = new ReentrantLock();
+        this._amountOfInactive = new AtomicInteger();
+    }
+
+    /**
+     * Returns the registrations which may be interested in given type of events of operations of given thread. The
+     * returned array must not be modified, it ends at its first {@code null} element, and it may contain registrations
+     * which are no longer active.
+     * 
+     * @param thread The thread of the operation, or {@code null} if the operation is not bound to any thread.
+     * @param type The type of the event.
+     * @return The registrations bound to given thread and accepting given type of events.
+     */
+    ListenerRegistrationImpl[] getRegistrations( Thread thread, ChangeType type )
+    {
+        ListenerRegistrationImpl[][] result = thread == null ? null : this._byThread.get( thread );
+        return result == null ? EMPTY : result[type.ordinal()];
+    }
+
+    /**
+     * Returns the registrations which are not bound to any thread and accept given type of events. The returned array
+     * must not be modified, it ends at its first {@code null} element, and it may contain registrations which are no
+     * longer active.
+     * 
+     * @param type The type of the event.
+     * @return The registrations not bound to any thread and accepting given type of events.
+     */
+    ListenerRegistrationImpl[] getUnboundRegistrations( ChangeType type )
+    {
+        return this._unbound[type.ordinal()];
+    }
+
+    int getAmountOfActive()
+    {
+        return this._amountOfActive.get();
+    }
+
+    ListenerRegistrationImpl add( StatusInfoListener listener, String associatedStatusReceipt,
+        StatusInfoSubscription subscription )
+    {
+        ListenerRegistrationImpl result = new ListenerRegistrationImpl( this, listener, associatedStatusReceipt,
+            subscription );
+        this._lock.lock();
+        try
+        {
+            Thread thread = result.getListenedThread();
+            if( result.getSubtreeReceipt() == null )
+            {
+                if( thread == null )
+                {
+                    this._unbound = append( this._unbound, result );
+                }
+                else
+                {
+                    ListenerRegistrationImpl[][] index = this._byThread.get( thread );
+                    this._byThread.put( thread, append( index == null ? EMPTY_INDEX : index, result ) );
+                }
+            }
+            this._amountOfActive.incrementAndGet();
+            this._registrations = append( this._registrations, result );
+        }
+        finally
+        {
+            this._lock.unlock();
+        }
+        return result;
+    }
+
+    ListenerRegistrationImpl findActive( StatusInfoListener listener )
+    {
+        ListenerRegistrationImpl[] registrations = this._registrations;
+        for( int idx = 0; idx < registrations.length && registrations[idx] != null; ++idx )
+        {
+            if( registrations[idx].isActive() && registrations[idx].getListener().equals( listener ) )
+            {
+                return registrations[idx];
+            }
+        }
+        return null;
+    }
+
+    void clear()
+    {
+        this._lock.lock();
+        try
+        {
+            ListenerRegistrationImpl[] registrations = this._registrations;
+            for( int idx = 0; idx < registrations.length && registrations[idx] != null; ++idx )
+            {
+                registrations[idx].unregister();
+            }
+            this.compact();
+        }
+        finally
+        {
+            this._lock.unlock();
+        }
+    }
+
+    void registrationDeactivated( ListenerRegistrationImpl registration )
+    {
+        this._amountOfActive.decrementAndGet();
+        if( registration.getSubtreeReceipt() != null )
+        {
+            this._subtreeListenerRemover.subtreeListenerUnregistered( registration );
+        }
+        int inactive = this._amountOfInactive.incrementAndGet();
+        if( inactive >= MIN_INACTIVE_FOR_COMPACTION && inactive >= sizeOf( this._registrations ) / 2 )
+        {
+            this._lock.lock();
+            try
+            {
+                this.compact();
+            }
+            finally
+            {
+                this._lock.unlock();
+            }
+        }
+    }
+
+    private static ListenerRegistrationImpl[][] newIndex()
+    {
+        ListenerRegistrationImpl[][] result = new ListenerRegistrationImpl[CHANGE_TYPES.length][];
+        for( int idx = 0; idx < result.length; ++idx )
+        {
+            result[idx] = EMPTY;
+        }
+        return result;
+    }
+
+    private static ListenerRegistrationImpl[][] append( ListenerRegistrationImpl[][] old,
+        ListenerRegistrationImpl registration )
+    {
+        ListenerRegistrationImpl[][] result = old.clone();
+        for( ChangeType type : CHANGE_TYPES )
+        {
+            if( registration.acceptsChangeType( type ) )
+            {
+                result[type.ordinal()] = append( old[type.ordinal()], registration );
+            }
+        }
+        return result;
+    }
+
+    // Must be called while holding _lock; readers holding the old array see the new registration or stop before it
+    private static ListenerRegistrationImpl[] append( ListenerRegistrationImpl[] old,
+        ListenerRegistrationImpl registration )
+    {
+        int size = sizeOf( old );
+        ListenerRegistrationImpl[] result = old;
+        if( size == old.length )
+        {
+            result = new ListenerRegistrationImpl[Math.max( MIN_CAPACITY, 2 * old.length )];
+            System.arraycopy( old, 0, result, 0, size );
+        }
+        result[size] = registration;
+        return result;
+    }
+
+    // Registrations are always at the beginning of the array, so the first null slot can be found with binary search
+    private static int sizeOf( ListenerRegistrationImpl[] registrations )
+    {
+        int low = 0;
+        int high = registrations.length;
+        while( low < high )
+        {
+            int middle = (low + high) >>> 1;
+            if( registrations[middle] == null )
+            {
+                high = middle;
+            }
+            else
+            {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    // Must be called while holding _lock
+    private void compact()
+    {
+        ListenerRegistrationImpl[] old = this._registrations;
+        int size = sizeOf( old );
+        int amountOfActive = 0;
+        for( int idx = 0; idx < size; ++idx )
+        {
+            if( old[idx].isActive() )
+            {
+                ++amountOfActive;
+            }
+        }
+        if( amountOfActive < size )
+        {
+            ListenerRegistrationImpl[] registrations = amountOfActive == 0 ? EMPTY
+                : new ListenerRegistrationImpl[amountOfActive];
+            int idx = 0;
+            for( int oldIdx = 0; oldIdx < size; ++oldIdx )
+            {
+                // Registration might become inactive during this loop; it will be removed on next compaction
+                if( old[oldIdx].isActive() && idx < registrations.length )
+                {
+                    registrations[idx++] = old[oldIdx];
+                }
+            }
+            if( idx < registrations.length )
+            {
+                ListenerRegistrationImpl[] trimmed = new ListenerRegistrationImpl[idx];
+                System.arraycopy( registrations, 0, trimmed, 0, idx );
+                registrations = trimmed;
+            }
+            this._registrations = registrations;
+            this._amountOfInactive.addAndGet( registrations.length - size );
+            this.rebuildIndices( registrations );
+        }
+    }
+
+    // Must be called while holding _lock
+    private void rebuildIndices( ListenerRegistrationImpl[] registrations )
+    {
+        List<ListenerRegistrationImpl> unbound = new ArrayList<ListenerRegistrationImpl>();
+        Map<Thread, List<ListenerRegistrationImpl>> byThread = new HashMap<Thread, List<ListenerRegistrationImpl>>();
+        for( ListenerRegistrationImpl registration : registrations )
+        {
+            Thread thread = registration.getListenedThread();
+            if( registration.getSubtreeReceipt() != null )
+            {
+                continue;
+            }
+
+            if( thread == null )
+            {
+                unbound.add( registration );
+            }
+            else
+            {
+                List<ListenerRegistrationImpl> list = byThread.get( thread );
+                if( list == null )
+                {
+                    list = new ArrayList<ListenerRegistrationImpl>();
+                    byThread.put( thread, list );
+                }
+                list.add( registration );
+            }
+        }
+
+        this._unbound = toIndex( unbound );
+        this._byThread.keySet().retainAll( byThread.keySet() );
+        for( Map.Entry<Thread, List<ListenerRegistrationImpl>> entry : byThread.entrySet() )
+        {
+            this._byThread.put( entry.getKey(), toIndex( entry.getValue() ) );
+        }
+    }
+
+    private static ListenerRegistrationImpl[][] toIndex( List<ListenerRegistrationImpl> registrations )
+    {
+        ListenerRegistrationImpl[][] result = newIndex();
+        for( ChangeType type : CHANGE_TYPES )
+        {
+            List<ListenerRegistrationImpl> accepting = new ArrayList<ListenerRegistrationImpl>( registrations.size() );
+            for( ListenerRegistrationImpl registration : registrations )
+            {
+                if( registration.acceptsChangeType( type ) )
+                {
+                    accepting.add( registration );
+                }
+            }
+            if( !accepting.isEmpty() )
+            {
+                result[type.ordinal()] = accepting.toArray( new ListenerRegistrationImpl[accepting.size()] );
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statusinfo.implementation;
+
+import org.statusinfo.api.LatencyDistribution;
+import org.statusinfo.api.OperationMetrics;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class OperationMetricsImpl
+    implements OperationMetrics
+{
+    private final String _name;
+    private final long _started;
+    private final long _completed;
+    private final long _failed;
+    private final long _totalSteps;
+    private final LatencyDistribution _latencies;
+
+    OperationMetricsImpl( String name, long started, long completed, long failed, long totalSteps,
+        LatencyDistribution latencies )
+    {
+        this._name = name;
+        this._started = started;
+        this._completed = completed;
+        this._failed = failed;
+        this._totalSteps = totalSteps;
+        this._latencies = latencies;
+    }
+
+    @Override
+    public String getOperationName()
+    {
+        return this._name;
+    }
+
+    @Override
+    public long getStarted()
+    {
+        return this._started;
+    }
+
+    @Override
+    public long getCompleted()
+    {
+        return this._completed;
+    }
+
+    @Override
+    public long getInFlight()
+    {
+        return Math.max( 0L, this._started - this._completed );
+    }
+
+    @Override
+    public long getFailed()
+    {
+        return this._failed;
+    }
+
+    @Override
+    public long getTotalSteps()
+    {
+        return this._totalSteps;
+    }
+
+    @Override
+    public LatencyDistribution getLatencies()
+    {
+        return this._latencies;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this._name + "(started=" + this._started + ",completed=" + this._completed + ",failed="
+            + this._failed + ",steps=" + this._totalSteps + "," + this._latencies + ")";
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.qi4j.api.util.NullArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a task periodically in a dedicated daemon thread. The task is run with a fixed delay between the end of one run
+ * and the start of the next one, so slow runs never pile up.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class OperationReaper
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger( OperationReaper.class );
+
+    private final ScheduledExecutorService _executor;
+    private final long _periodNanos;
+    private final Runnable _task;
+
+    OperationReaper( final String name, long periodNanos, Runnable task )
+    {
+        NullArgumentException.validateNotNull( "Task", task );
+
+        this._executor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread result = new Thread( runnable, name );
+                result.setDaemon( true );
+                return result;
+            }
+        } );
+        this._periodNanos = periodNanos;
+        this._task = task;
+    }
+
+    void start()
+    {
+        this._executor.scheduleWithFixedDelay( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // Executor would cancel all further runs if this threw
+                try
+                {
+                    _task.run();
+                }
+                catch( Throwable t )
+                {
+                    LOGGER.warn( "Reaping leaked operations failed.", t );
+                }
+            }
+        }, this._periodNanos, this._periodNanos, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * Stops the reaper, after the current run has finished.
+     *
+     * @throws InterruptedException If interrupted while waiting for the current run to finish.
+     */
+    void stop()
+        throws InterruptedException
+    {
+        this._executor.shutdown();
+        this._executor.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+    }
+}
@@ -18,6 +18,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.statusinfo.api.OperationSnapshot;
+import org.statusinfo.api.StatusInfoSnapshot;
 import org.statusinfo.api.ThreadSnapshot;
 
 /**
@@ -29,12 +30,17 @@ final class OperationSnapshotImpl
 {
 
     private final List<ThreadSnapshot> _snapshots;
+    private final List<StatusInfoSnapshot> _asyncSnapshots;
     private final int _amountOfListeners;
+    private final long _amountOfDroppedEvents;
 
-    OperationSnapshotImpl( List<ThreadSnapshot> snapshots, int amountOfListeners )
+    OperationSnapshotImpl( List<ThreadSnapshot> snapshots, List<StatusInfoSnapshot> asyncSnapshots,
+        int amountOfListeners, long amountOfDroppedEvents )
     {
         this._snapshots = Collections.unmodifiableList( snapshots );
+        this._asyncSnapshots = Collections.unmodifiableList( asyncSnapshots );
         this._amountOfListeners = amountOfListeners;
+        this._amountOfDroppedEvents = amountOfDroppedEvents;
     }
 
     @Override
@@ -43,19 +49,32 @@ final class OperationSnapshotImpl
         return this._snapshots;
     }
 
+    @Override
+    public List<StatusInfoSnapshot> getAsyncOperationStatuses()
+    {
+        return this._asyncSnapshots;
+    }
+
     @Override
     public int getAmountOfAllListeners()
     {
         return this._amountOfListeners;
     }
 
+    @Override
+    public long getAmountOfDroppedEvents()
+    {
+        return this._amountOfDroppedEvents;
+    }
+
     @Override
     public boolean equals( Object obj )
     {
         return this == obj
             || (obj instanceof OperationSnapshot
-                && this._amountOfListeners == ((OperationSnapshot) obj).getAmountOfAllListeners() && this._snapshots
-                    .equals( ((OperationSnapshot) obj).getThreadSnapshots() ));
+                && this._amountOfListeners == ((OperationSnapshot) obj).getAmountOfAllListeners()
+                && this._snapshots.equals( ((OperationSnapshot) obj).getThreadSnapshots() ) && this._asyncSnapshots
+                    .equals( ((OperationSnapshot) obj).getAsyncOperationStatuses() ));
     }
 
     @Override
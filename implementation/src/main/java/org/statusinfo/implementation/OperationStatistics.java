@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statusinfo.implementation;
+
+import org.statusinfo.api.OperationMetrics;
+import org.statusinfo.api.StatusInfo;
+
+/**
+ * Live statistics of all operations with the same name. All recording is done with striped counters, so that threads
+ * running operations with the same name do not contend with each other.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class OperationStatistics
+{
+    private final String _name;
+    private final StripedCounter _started;
+    private final StripedCounter _completed;
+    private final StripedCounter _failed;
+    private final StripedCounter _steps;
+    private final StripedHistogram _latencies;
+
+    OperationStatistics( String name )
+    {
+        this._name = name;
+        this._started = new StripedCounter();
+        this._completed = new StripedCounter();
+        this._failed = new StripedCounter();
+        this._steps = new StripedCounter();
+        this._latencies = new StripedHistogram();
+    }
+
+    void started()
+    {
+        this._started.add( 1L );
+    }
+
+    void started( int amount )
+    {
+        this._started.add( amount );
+    }
+
+    void stepsAdded( int amount )
+    {
+        this._steps.add( amount );
+    }
+
+    /**
+     * Records the end of an operation.
+     *
+     * @param duration The duration of the operation, or {@link StatusInfo#NO_TIME} if it was not timed.
+     */
+    void completed( long duration )
+    {
+        if( duration != StatusInfo.NO_TIME )
+        {
+            this._latencies.record( duration );
+        }
+        this._completed.add( 1L );
+    }
+
+    void failed()
+    {
+        this._failed.add( 1L );
+    }
+
+    /**
+     * Returns the mean duration of completed operations, without creating a snapshot of the histogram.
+     *
+     * @return The mean duration, or {@link StatusInfo#NO_TIME} if no timed operation has completed yet.
+     */
+    long getMeanDuration()
+    {
+        long count = this._latencies.getCount();
+        return count == 0L ? StatusInfo.NO_TIME : this._latencies.getSum() / count;
+    }
+
+    OperationMetrics snapshot()
+    {
+        // Read completed before started, so that in-flight count never goes negative
+        long completed = this._completed.sum();
+        long started = this._started.sum();
+        return new OperationMetricsImpl( this._name, started, completed, this._failed.sum(), this._steps.sum(),
+            this._latencies.snapshot() );
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.statusinfo.api.bootstrap.TrackingPolicy;
+
+/**
+ * Applies the {@link TrackingPolicy} of one operation name. Deciding whether to track an operation touches only
+ * thread-local state, so threads running operations with the same name never contend with each other.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class OperationTracker
+{
+    // 0 when no operations are tracked
+    private final int _sampleInterval;
+
+    // Operations left until next tracked one, per thread; null unless sampling
+    private final ThreadLocal<int[]> _countdowns;
+
+    OperationTracker( TrackingPolicy policy, int verbosity )
+    {
+        this._sampleInterval = verbosity < policy.getMinimumVerbosity() ? 0 : policy.getSampleInterval();
+        this._countdowns = this._sampleInterval > 1 ? new ThreadLocal<int[]>()
+        {
+            @Override
+            protected int[] initialValue()
+            {
+                // Start from a random operation, so that short-lived threads do not all track their first one
+                return new int[]
+                {
+                    ThreadLocalRandom.current().nextInt( OperationTracker.this._sampleInterval ) + 1
+                };
+            }
+        } : null;
+    }
+
+    boolean isTracked()
+    {
+        boolean result = this._sampleInterval == 1;
+        if( this._countdowns != null )
+        {
+            int[] countdown = this._countdowns.get();
+            result = --countdown[0] == 0;
+            if( result )
+            {
+                countdown[0] = this._sampleInterval;
+            }
+        }
+        return result;
+    }
+}
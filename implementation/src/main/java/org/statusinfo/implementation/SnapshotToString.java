@@ -14,6 +14,8 @@
 
 package org.statusinfo.implementation;
 
+import java.util.concurrent.TimeUnit;
+
 import org.statusinfo.api.OperationSnapshot;
 import org.statusinfo.api.StatusInfo;
 import org.statusinfo.api.StatusInfoSnapshot;
@@ -27,8 +29,9 @@ public final class SnapshotToString
 {
     public static String toString( OperationSnapshot snapshot )
     {
-        return "Operation state(listeners=" + snapshot.getAmountOfAllListeners() + ",threadStates="
-            + snapshot.getThreadSnapshots() + ")";
+        return "Operation state(listeners=" + snapshot.getAmountOfAllListeners() + ",droppedEvents="
+            + snapshot.getAmountOfDroppedEvents() + ",threadStates="
+            + snapshot.getThreadSnapshots() + ",asyncStates=" + snapshot.getAsyncOperationStatuses() + ")";
     }
 
     public static String toString( ThreadSnapshot threadSnapshot )
@@ -43,7 +46,10 @@ public final class SnapshotToString
 
     public static String toString( StatusInfo info )
     {
+        long duration = info.getDuration();
         return info.getName() + "(id=" + info.getID() + ",thread=" + info.getThread() + ",steps="
-            + info.getCurrentSteps() + "/" + info.getMaxSteps() + ")";
+            + info.getCurrentSteps() + "/" + info.getMaxSteps()
+            + (duration == StatusInfo.NO_TIME ? "" : ",duration=" + TimeUnit.NANOSECONDS.toMillis( duration ) + "ms")
+            + ")";
     }
 }
@@ -13,8 +13,13 @@
  */
 package org.statusinfo.implementation;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 import org.qi4j.api.util.NullArgumentException;
 import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.bootstrap.Clock;
 
 /**
  * @author Stanislav Muhametsin
@@ -23,30 +28,134 @@ import org.statusinfo.api.StatusInfo;
 final class StatusInfoImpl
     implements StatusInfo
 {
+    private static final AtomicIntegerFieldUpdater<StatusInfoImpl> CURRENT_STEPS_UPDATER = AtomicIntegerFieldUpdater
+        .newUpdater( StatusInfoImpl.class, "_currentSteps" );
+
+    // Last update time of shared operations is only written when at least this many nanoseconds have passed
+    private static final long SHARED_UPDATE_TIME_GRANULARITY = 100000L;
+
+    private static final AtomicLongFieldUpdater<StatusInfoImpl> RATE_SAMPLE_TIME_UPDATER = AtomicLongFieldUpdater
+        .newUpdater( StatusInfoImpl.class, "_rateSampleTime" );
+
+    // The step rate is sampled at most this often, so that updates rarely need to do more than read the clock
+    private static final long RATE_SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos( 100L );
+
+    // Steps older than this weigh about 37 percent, twice as old about 14 percent, and so on
+    private static final double RATE_TIME_CONSTANT = TimeUnit.SECONDS.toNanos( 5L );
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos( 1L );
+
+    private static final AtomicLongFieldUpdater<StatusInfoImpl> CONTRIBUTION_UPDATER = AtomicLongFieldUpdater
+        .newUpdater( StatusInfoImpl.class, "_contribution" );
+
+    private static final AtomicLongFieldUpdater<StatusInfoImpl> ROLLED_UP_UPDATER = AtomicLongFieldUpdater
+        .newUpdater( StatusInfoImpl.class, "_rolledUp" );
+
+    // Progress is kept in fixed point, so that the contributions of children always sum up exactly
+    private static final long PROGRESS_SCALE = 1L << 30;
 
     private final StatusInfo _parent;
     private final String _id;
     private final String _name;
     private final Thread _thread;
     private final int _maxSteps;
-    private int _currentSteps;
+    // Might be updated from several threads at once
+    private volatile int _currentSteps;
 
-    StatusInfoImpl( StatusInfo parent, String id, String name, Thread thread, int maxSteps )
-    {
-        this( parent, id, name, thread, maxSteps, 0 );
-    }
+    // Used instead of _currentSteps for operations which are updated by many threads at once
+    private final StripedCounter _sharedSteps;
+
+    // Null when operations are not timed
+    private final Clock _clock;
+    private final long _startTime;
+    private volatile long _lastUpdateTime;
+    private volatile long _endTime;
+    // Time when this copy was frozen, NO_TIME if this is not a frozen copy
+    private final long _frozenTime;
+
+    // Step rate as of last sample, NaN until the first sample; written only by the thread which won the sample
+    private volatile double _rate;
+    private volatile long _rateSampleTime;
+    private volatile int _stepsAtSample;
+
+    // Statistics of operations with the same name, null when not collecting metrics or if this is a frozen copy
+    private final OperationStatistics _statistics;
+
+    // Share of the progress of parent, in PROGRESS_SCALE units; 0 if this does not contribute to parent progress
+    private final long _share;
+    // What this currently contributes to the progress of parent, in PROGRESS_SCALE units
+    private volatile long _contribution;
+    // Sum of the contributions of children
+    private volatile long _rolledUp;
+    private volatile boolean _ended;
 
-    StatusInfoImpl( StatusInfo parent, String id, String name, Thread thread, int maxSteps, int currentSteps )
+    // Rate and estimate as they were when this copy was frozen
+    private final double _frozenRate;
+    private final long _frozenTimeRemaining;
+
+    /**
+     * Creates a new status info.
+     * 
+     * @param thread The thread of the operation, or {@code null} for asynchronous operations.
+     * @param clock The clock to read the times from, or {@code null} if the operation is not timed.
+     * @param statistics The statistics of operations with the same name, or {@code null} if metrics are not collected.
+     * @param shareOfParent The share of the progress of parent this operation stands for, or {@code 0} if it does not
+     *            contribute to the progress of parent.
+     */
+    StatusInfoImpl( StatusInfoImpl parent, String id, String name, Thread thread, int maxSteps,
+        boolean sharedProgress, Clock clock, OperationStatistics statistics, double shareOfParent )
     {
         NullArgumentException.validateNotNull( "ID", id );
-        NullArgumentException.validateNotNull( "Thread", thread );
 
         this._id = id;
         this._parent = parent;
         this._name = name;
         this._thread = thread;
         this._maxSteps = maxSteps;
-        this._currentSteps = currentSteps;
+        this._currentSteps = 0;
+        this._sharedSteps = sharedProgress ? new StripedCounter() : null;
+        this._clock = clock;
+        this._startTime = clock == null ? NO_TIME : clock.nanoTime();
+        this._lastUpdateTime = this._startTime;
+        this._endTime = NO_TIME;
+        this._frozenTime = NO_TIME;
+        this._rate = Double.NaN;
+        this._rateSampleTime = this._startTime;
+        this._stepsAtSample = 0;
+        this._statistics = statistics;
+        this._share = parent == null ? 0L : Math.round( shareOfParent * PROGRESS_SCALE );
+        this._contribution = 0L;
+        this._rolledUp = 0L;
+        this._ended = false;
+        this._frozenRate = 0.0;
+        this._frozenTimeRemaining = NO_TIME;
+    }
+
+    private StatusInfoImpl( StatusInfoImpl original, StatusInfo frozenParent, long frozenTime )
+    {
+        this._id = original._id;
+        this._parent = frozenParent;
+        this._name = original._name;
+        this._thread = original._thread;
+        this._maxSteps = original._maxSteps;
+        this._currentSteps = original.getCurrentSteps();
+        this._sharedSteps = null;
+        this._clock = original._clock;
+        this._startTime = original._startTime;
+        this._lastUpdateTime = original._lastUpdateTime;
+        this._endTime = original._endTime;
+        this._frozenTime = frozenTime;
+        this._rate = original._rate;
+        this._rateSampleTime = original._rateSampleTime;
+        this._stepsAtSample = original._stepsAtSample;
+        this._statistics = null;
+        this._share = original._share;
+        this._contribution = original._contribution;
+        this._rolledUp = original._rolledUp;
+        this._ended = original._ended;
+        this._frozenRate = original._clock == null ? 0.0 : original.getStepRate( frozenTime );
+        this._frozenTimeRemaining = original._clock == null ? NO_TIME : original
+            .getEstimatedTimeRemaining( frozenTime );
     }
 
     @Override
@@ -70,7 +179,178 @@ final class StatusInfoImpl
     @Override
     public int getCurrentSteps()
     {
-        return this._currentSteps;
+        return this._sharedSteps == null ? this._currentSteps : (int) this._sharedSteps.sum();
+    }
+
+    @Override
+    public long getStartTime()
+    {
+        return this._startTime;
+    }
+
+    @Override
+    public long getLastUpdateTime()
+    {
+        return this._lastUpdateTime;
+    }
+
+    @Override
+    public long getEndTime()
+    {
+        return this._endTime;
+    }
+
+    @Override
+    public long getDuration()
+    {
+        long result = NO_TIME;
+        if( this._clock != null )
+        {
+            long end = this._endTime;
+            if( end == NO_TIME )
+            {
+                end = this._frozenTime == NO_TIME ? this._clock.nanoTime() : this._frozenTime;
+            }
+            result = end - this._startTime;
+        }
+        return result;
+    }
+
+    @Override
+    public double getStepRate()
+    {
+        double result = 0.0;
+        if( this._frozenTime != NO_TIME )
+        {
+            result = this._frozenRate;
+        }
+        else if( this._clock != null )
+        {
+            result = this.getStepRate( this._clock.nanoTime() );
+        }
+        return result;
+    }
+
+    @Override
+    public long getEstimatedTimeRemaining()
+    {
+        long result = NO_TIME;
+        if( this._frozenTime != NO_TIME )
+        {
+            result = this._frozenTimeRemaining;
+        }
+        else if( this._clock != null && this._endTime == NO_TIME )
+        {
+            result = this.getEstimatedTimeRemaining( this._clock.nanoTime() );
+        }
+        else if( this._endTime != NO_TIME )
+        {
+            result = 0L;
+        }
+        return result;
+    }
+
+    @Override
+    public double getProgress()
+    {
+        return (double) this.getScaledProgress() / PROGRESS_SCALE;
+    }
+
+    private long getScaledProgress()
+    {
+        long result = PROGRESS_SCALE;
+        if( !this._ended )
+        {
+            result = this._rolledUp;
+            if( this._maxSteps > 0 )
+            {
+                result += Math.max( 0L, Math.min( PROGRESS_SCALE, this.getCurrentSteps() * PROGRESS_SCALE
+                    / this._maxSteps ) );
+            }
+            result = Math.max( 0L, Math.min( PROGRESS_SCALE, result ) );
+        }
+        return result;
+    }
+
+    /**
+     * Passes the change in progress of this operation to its parent, and so on up the tree, for as long as the
+     * operations contribute to the progress of their parents and their contribution changes.
+     */
+    private void propagateProgress()
+    {
+        StatusInfoImpl info = this;
+        boolean changed = true;
+        while( changed && info._share > 0L )
+        {
+            long previous = 0L;
+            long contribution = 0L;
+            do
+            {
+                // Whoever sets the contribution last has computed it after all changes so far
+                previous = info._contribution;
+                contribution = info._share * info.getScaledProgress() / PROGRESS_SCALE;
+            }
+            while( previous != contribution && !CONTRIBUTION_UPDATER.compareAndSet( info, previous, contribution ) );
+
+            changed = previous != contribution;
+            if( changed )
+            {
+                info = (StatusInfoImpl) info._parent;
+                ROLLED_UP_UPDATER.addAndGet( info, contribution - previous );
+            }
+        }
+    }
+
+    private double getStepRate( long now )
+    {
+        double result = this._rate;
+        long elapsed = now - this._rateSampleTime;
+        if( elapsed >= RATE_SAMPLE_INTERVAL )
+        {
+            // Include the steps since last sample, so that the rate slows down when updates stop
+            result = this.nextRate( result, this.getCurrentSteps() - this._stepsAtSample, elapsed );
+        }
+        return Double.isNaN( result ) ? 0.0 : result;
+    }
+
+    private long getEstimatedTimeRemaining( long now )
+    {
+        long result = NO_TIME;
+        double rate = this.getStepRate( now );
+        if( this._maxSteps >= 0 && rate > 0.0 )
+        {
+            int remaining = Math.max( 0, this._maxSteps - this.getCurrentSteps() );
+            result = (long) (remaining / rate * NANOS_PER_SECOND);
+        }
+        else if( this._statistics != null )
+        {
+            long mean = this._statistics.getMeanDuration();
+            if( mean != NO_TIME )
+            {
+                result = Math.max( 0L, mean - (now - this._startTime) );
+            }
+        }
+        return result;
+    }
+
+    private void sampleRate( long now )
+    {
+        long sampleTime = this._rateSampleTime;
+        // Only one of the updating threads takes the sample
+        if( now - sampleTime >= RATE_SAMPLE_INTERVAL
+            && RATE_SAMPLE_TIME_UPDATER.compareAndSet( this, sampleTime, now ) )
+        {
+            int steps = this.getCurrentSteps();
+            this._rate = this.nextRate( this._rate, steps - this._stepsAtSample, now - sampleTime );
+            this._stepsAtSample = steps;
+        }
+    }
+
+    private double nextRate( double previous, int steps, long elapsed )
+    {
+        double rate = steps * NANOS_PER_SECOND / elapsed;
+        return Double.isNaN( previous ) ? rate : previous + (1.0 - Math.exp( -elapsed / RATE_TIME_CONSTANT ))
+            * (rate - previous);
     }
 
     @Override
@@ -85,14 +365,65 @@ final class StatusInfoImpl
         return this._parent;
     }
 
-    void setCurrentSteps( int newCurrentSteps )
+    void addCurrentSteps( int amount )
     {
-        this._currentSteps = newCurrentSteps;
+        if( this._sharedSteps == null )
+        {
+            CURRENT_STEPS_UPDATER.addAndGet( this, amount );
+        }
+        else
+        {
+            this._sharedSteps.add( amount );
+        }
+
+        if( this._clock != null )
+        {
+            long now = this._clock.nanoTime();
+            // Writing the time on every update of shared operation would make all updating threads contend for it
+            if( this._sharedSteps == null || now - this._lastUpdateTime >= SHARED_UPDATE_TIME_GRANULARITY )
+            {
+                this._lastUpdateTime = now;
+            }
+            if( now - this._rateSampleTime >= RATE_SAMPLE_INTERVAL )
+            {
+                this.sampleRate( now );
+            }
+        }
+        if( this._share > 0L )
+        {
+            this.propagateProgress();
+        }
     }
 
-    void addCurrentSteps( int amount )
+    OperationStatistics getStatistics()
+    {
+        return this._statistics;
+    }
+
+    void markEnded( long endTime )
+    {
+        if( this._clock != null )
+        {
+            this._endTime = endTime;
+        }
+        this._ended = true;
+        if( this._share > 0L )
+        {
+            this.propagateProgress();
+        }
+    }
+
+    /**
+     * Creates a copy of this status info, which will not change anymore.
+     * 
+     * @param frozenParent The frozen copy of the parent of this status info.
+     * @param frozenTime The time when the copy is made, used as end time when computing the duration of operations
+     *            in progress.
+     * @return The copy of this status info, with current steps as they are at the moment.
+     */
+    StatusInfoImpl freeze( StatusInfo frozenParent, long frozenTime )
     {
-        this._currentSteps += amount;
+        return new StatusInfoImpl( this, frozenParent, frozenTime );
     }
 
     @Override
@@ -14,28 +14,55 @@
 package org.statusinfo.implementation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import org.qi4j.api.injection.scope.Uses;
 import org.qi4j.api.mixin.Mixins;
 import org.qi4j.api.service.Activatable;
 import org.qi4j.api.service.ServiceComposite;
-import org.qi4j.functional.Iterables;
-import org.qi4j.functional.Specification;
+import org.qi4j.api.service.ServiceDescriptor;
+import org.qi4j.api.util.NullArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.statusinfo.api.BatchStatusInfoListener;
+import org.statusinfo.api.ListenerRegistration;
 import org.statusinfo.api.NoOperationInProgressException;
 import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.OperationHandle;
+import org.statusinfo.api.OperationMetrics;
 import org.statusinfo.api.OperationSnapshot;
 import org.statusinfo.api.StatusInfo;
 import org.statusinfo.api.StatusInfoListener;
 import org.statusinfo.api.StatusInfoListener.ChangeType;
 import org.statusinfo.api.StatusInfoService;
 import org.statusinfo.api.StatusInfoSnapshot;
+import org.statusinfo.api.StatusInfoSubscription;
 import org.statusinfo.api.ThreadSnapshot;
+import org.statusinfo.api.bootstrap.Clock;
+import org.statusinfo.api.bootstrap.OperationIDGenerator;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+import org.statusinfo.api.bootstrap.StatusInfoSettings.DispatchMode;
+import org.statusinfo.api.bootstrap.StatusInfoSettings.LeakAction;
+import org.statusinfo.api.bootstrap.TrackingPolicy;
 
 /**
  * @author Stanislav Muhametsin
@@ -55,467 +82,1951 @@ public class StatusInfoServiceImpl
 
     }
 
-    private static class StatusInfoInfo
+    private static class StatusInfoInfo extends AbstractSpinLockable
+        implements OperationCreationResult
     {
+        private static final ListenerRegistrationImpl[] NO_LISTENERS = new ListenerRegistrationImpl[0];
+
+        private static final AtomicIntegerFieldUpdater<StatusInfoInfo> PENDING_STEPS_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater( StatusInfoInfo.class, "_pendingSteps" );
+
+        private static final AtomicIntegerFieldUpdater<StatusInfoInfo> SUBTREE_GENERATION_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater( StatusInfoInfo.class, "_subtreeGeneration" );
+
         // Parent must never be this
         private final StatusInfoInfo _parent;
 
-        // This object must never be in _children
-        private final Set<StatusInfoInfo> _children;
         private final StatusInfoImpl _statusInfo;
         private final String _receipt;
 
-        public StatusInfoInfo( StatusInfoImpl statusInfo, String receipt )
-        {
-            this( null, statusInfo, receipt );
-        }
+        // The stack of the thread; assigned while holding the lock of the stack, before this is pushed to it. Stays
+        // null for operations which are not bound to any thread.
+        private volatile ThreadStack _stack;
+
+        // The operation below this one in the stack of the thread; assigned once, before this is pushed to the stack
+        private StatusInfoInfo _below;
+
+        // Same for all operations in the same operation tree
+        private final int _dispatchKey;
+        private final StatusInfoInfo _root;
+
+        // Modified while holding the lock of this object
+        private volatile boolean _ended;
+
+        // Incremented when this operation ends, so that stale handles can be detected
+        private volatile int _generation;
+
+        // Steps not yet notified to listeners, when coalescing changes
+        private volatile int _pendingSteps;
+        private volatile long _lastChangeNotification;
+
+        // Where this operation was started, recorded only when configured so
+        private Throwable _creationSite;
+
+        // Set once the reaper has reported this operation as leaked; only accessed by the reaper thread
+        private boolean _reportedAsLeak;
+
+        // Listeners to remove once this operation ends; never modified, only replaced while holding the lock of this
+        // object
+        private volatile ListenerRegistrationImpl[] _dedicatedListeners;
+
+        // Listeners of the subtree starting from this operation, also removed once this operation ends; same rules
+        // apply
+        private volatile ListenerRegistrationImpl[] _subtreeListeners;
+
+        // Subtree listeners of this operation and all its ancestors, computed on demand
+        private volatile SubtreeListeners _inheritedSubtreeListeners;
+
+        // Only used in the root operation of each tree: incremented whenever subtree listeners are added to or removed
+        // from any operation of the tree, so that inherited subtree listeners of the tree are computed again
+        private volatile int _subtreeGeneration;
 
         public StatusInfoInfo( StatusInfoInfo parent, StatusInfoImpl statusInfo, String receipt )
         {
             this._parent = parent;
-            this._children = new HashSet<StatusInfoInfo>();
             this._statusInfo = statusInfo;
             this._receipt = receipt;
+            this._stack = null;
+            this._dispatchKey = parent == null ? receipt.hashCode() : parent.getDispatchKey();
+            this._root = parent == null ? this : parent._root;
+            this._ended = false;
+            this._generation = 0;
+            this._pendingSteps = 0;
+            this._lastChangeNotification = 0L;
+            this._creationSite = null;
+            this._reportedAsLeak = false;
+            this._dedicatedListeners = NO_LISTENERS;
+            this._subtreeListeners = NO_LISTENERS;
+            // Without listeners of its own, this inherits the listeners of the parent as they are now
+            this._inheritedSubtreeListeners = parent == null ? null : parent._inheritedSubtreeListeners;
+            this._subtreeGeneration = 0;
+        }
+
+        public StatusInfoImpl getStatusInfo()
+        {
+            return this._statusInfo;
+        }
+
+        @Override
+        public String getReceipt()
+        {
+            return this._receipt;
+        }
+
+        @Override
+        public String getID()
+        {
+            return this._statusInfo.getID();
+        }
+
+        public StatusInfoInfo getBelow()
+        {
+            return this._below;
+        }
+
+        public StatusInfoInfo getParent()
+        {
+            return this._parent;
+        }
+
+        public ThreadStack getStack()
+        {
+            return this._stack;
+        }
+
+        public int getDispatchKey()
+        {
+            return this._dispatchKey;
+        }
+
+        /**
+         * Checks whether child operations may still be started within this operation. Callers must hold the lock of
+         * this object until the child is registered, so that this operation can not end meanwhile.
+         * 
+         * @return {@code true} if this operation has not ended.
+         */
+        public boolean acceptsChildren()
+        {
+            return !this._ended;
+        }
+
+        public boolean isEnded()
+        {
+            return this._ended;
+        }
+
+        public void markEnded()
+        {
+            this.lock();
+            try
+            {
+                this._ended = true;
+                ++this._generation;
+            }
+            finally
+            {
+                this.unlock();
+            }
+        }
+
+        public int getGeneration()
+        {
+            return this._generation;
+        }
+
+        public int addPendingSteps( int amount )
+        {
+            return PENDING_STEPS_UPDATER.addAndGet( this, amount );
+        }
+
+        public int takePendingSteps()
+        {
+            return PENDING_STEPS_UPDATER.getAndSet( this, 0 );
+        }
+
+        // Checked while holding the lock, so that the steps are never taken after the operation has been marked ended:
+        // from then on, the remaining steps are notified just before the end
+        public int takePendingStepsIfInProgress()
+        {
+            this.lock();
+            try
+            {
+                return this._ended ? 0 : PENDING_STEPS_UPDATER.getAndSet( this, 0 );
+            }
+            finally
+            {
+                this.unlock();
+            }
+        }
+
+        public long getLastChangeNotification()
+        {
+            return this._lastChangeNotification;
+        }
+
+        public void setLastChangeNotification( long time )
+        {
+            this._lastChangeNotification = time;
+        }
+
+        public Throwable getCreationSite()
+        {
+            return this._creationSite;
+        }
+
+        public OperationStatistics getStatistics()
+        {
+            return this._statusInfo.getStatistics();
+        }
+
+        public boolean isReportedAsLeak()
+        {
+            return this._reportedAsLeak;
+        }
+
+        public void setReportedAsLeak()
+        {
+            this._reportedAsLeak = true;
+        }
+
+        public boolean addDedicatedListener( ListenerRegistrationImpl registration )
+        {
+            return this.addListener( registration, false );
+        }
+
+        public ListenerRegistrationImpl[] takeDedicatedListeners()
+        {
+            this.lock();
+            try
+            {
+                ListenerRegistrationImpl[] result = this._dedicatedListeners;
+                this._dedicatedListeners = NO_LISTENERS;
+                return result;
+            }
+            finally
+            {
+                this.unlock();
+            }
+        }
+
+        public boolean addSubtreeListener( ListenerRegistrationImpl registration )
+        {
+            return this.addListener( registration, true );
+        }
+
+        public boolean removeSubtreeListener( ListenerRegistrationImpl registration )
+        {
+            this.lock();
+            try
+            {
+                ListenerRegistrationImpl[] old = this._subtreeListeners;
+                int index = -1;
+                for( int idx = 0; index < 0 && idx < old.length; ++idx )
+                {
+                    if( old[idx] == registration )
+                    {
+                        index = idx;
+                    }
+                }
+                if( index >= 0 )
+                {
+                    ListenerRegistrationImpl[] result = old.length == 1 ? NO_LISTENERS
+                        : new ListenerRegistrationImpl[old.length - 1];
+                    System.arraycopy( old, 0, result, 0, index );
+                    System.arraycopy( old, index + 1, result, index, result.length - index );
+                    this._subtreeListeners = result;
+                }
+                return index >= 0;
+            }
+            finally
+            {
+                this.unlock();
+            }
+        }
+
+        public ListenerRegistrationImpl[] takeSubtreeListeners()
+        {
+            this.lock();
+            try
+            {
+                ListenerRegistrationImpl[] result = this._subtreeListeners;
+                this._subtreeListeners = NO_LISTENERS;
+                return result;
+            }
+            finally
+            {
+                this.unlock();
+            }
+        }
+
+        private boolean addListener( ListenerRegistrationImpl registration, boolean subtree )
+        {
+            this.lock();
+            try
+            {
+                boolean result = !this._ended;
+                if( result )
+                {
+                    if( subtree )
+                    {
+                        this._subtreeListeners = append( this._subtreeListeners, registration );
+                    }
+                    else
+                    {
+                        this._dedicatedListeners = append( this._dedicatedListeners, registration );
+                    }
+                }
+                return result;
+            }
+            finally
+            {
+                this.unlock();
+            }
+        }
+
+        private static ListenerRegistrationImpl[] append( ListenerRegistrationImpl[] old,
+            ListenerRegistrationImpl registration )
+        {
+            ListenerRegistrationImpl[] result = new ListenerRegistrationImpl[old.length + 1];
+            System.arraycopy( old, 0, result, 0, old.length );
+            result[old.length] = registration;
+            return result;
+        }
+
+        /**
+         * Returns the subtree listeners of this operation and all of its ancestors. The result is resolved when this
+         * operation is created, and computed again only when subtree listeners of the same operation tree have been
+         * added or removed meanwhile. Computing it again only goes up to the nearest ancestor whose result is still up
+         * to date.
+         * 
+         * @return The subtree listeners of this operation and all of its ancestors.
+         */
+        public ListenerRegistrationImpl[] getInheritedSubtreeListeners()
+        {
+            // Read the generation before the listeners, so that a concurrent change is detected by the next call
+            int generation = this._root._subtreeGeneration;
+            SubtreeListeners result = this._inheritedSubtreeListeners;
+            if( result == null || result._generation != generation )
+            {
+                List<StatusInfoInfo> outdated = new ArrayList<StatusInfoInfo>();
+                SubtreeListeners inherited = null;
+                for( StatusInfoInfo info = this; inherited == null && info != null; info = info._parent )
+                {
+                    SubtreeListeners cached = info._inheritedSubtreeListeners;
+                    if( cached != null && cached._generation == generation )
+                    {
+                        inherited = cached;
+                    }
+                    else
+                    {
+                        outdated.add( info );
+                    }
+                }
+
+                result = inherited == null ? new SubtreeListeners( generation, NO_LISTENERS ) : inherited;
+                for( int idx = outdated.size() - 1; idx >= 0; --idx )
+                {
+                    StatusInfoInfo info = outdated.get( idx );
+                    ListenerRegistrationImpl[] own = info._subtreeListeners;
+                    if( own.length > 0 )
+                    {
+                        result = new SubtreeListeners( generation, concat( result._registrations, own ) );
+                    }
+                    info._inheritedSubtreeListeners = result;
+                }
+            }
+            return result._registrations;
+        }
+
+        public void subtreeListenersChanged()
+        {
+            SUBTREE_GENERATION_UPDATER.incrementAndGet( this._root );
+        }
+
+        private static ListenerRegistrationImpl[] concat( ListenerRegistrationImpl[] first,
+            ListenerRegistrationImpl[] second )
+        {
+            ListenerRegistrationImpl[] result = first;
+            if( first.length == 0 )
+            {
+                result = second;
+            }
+            else if( second.length > 0 )
+            {
+                result = new ListenerRegistrationImpl[first.length + second.length];
+                System.arraycopy( first, 0, result, 0, first.length );
+                System.arraycopy( second, 0, result, first.length, second.length );
+            }
+            return result;
+        }
+
+        public int getAmountOfDedicatedListeners()
+        {
+            int result = 0;
+            for( ListenerRegistrationImpl registration : this._dedicatedListeners )
+            {
+                if( registration.isActive() )
+                {
+                    ++result;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            return this == obj
+                || (obj instanceof OperationCreationResult && this._receipt.equals( ((OperationCreationResult) obj)
+                    .getReceipt() ));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this._receipt.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Operation(id=" + this.getID() + ",receipt=" + this._receipt + ")";
+        }
+    }
+
+    // Events of one bulk call for a single listener
+    private static final class ListenerBatch
+    {
+        private final List<StatusInfo> _statusInfos;
+        private int[] _stepsAdded;
+
+        private ListenerBatch()
+        {
+            this._statusInfos = new ArrayList<StatusInfo>();
+            this._stepsAdded = new int[8];
+        }
+
+        private void add( StatusInfo statusInfo, int stepsAdded )
+        {
+            int idx = this._statusInfos.size();
+            if( idx == this._stepsAdded.length )
+            {
+                this._stepsAdded = Arrays.copyOf( this._stepsAdded, idx * 2 );
+            }
+            this._stepsAdded[idx] = stepsAdded;
+            this._statusInfos.add( statusInfo );
         }
 
-        public StatusInfoImpl getStatusInfo()
-        {
-            return this._statusInfo;
+        private void deliver( StatusInfoListener listener, ChangeType type )
+        {
+            int amount = this._statusInfos.size();
+            if( listener instanceof BatchStatusInfoListener )
+            {
+                List<StatusInfo> statusInfos = Collections.unmodifiableList( this._statusInfos );
+                ((BatchStatusInfoListener) listener).operationsChanged( statusInfos, type,
+                    Arrays.copyOf( this._stepsAdded, amount ) );
+            }
+            else
+            {
+                for( int idx = 0; idx < amount; ++idx )
+                {
+                    listener.operationChanged( this._statusInfos.get( idx ), type, this._stepsAdded[idx] );
+                }
+            }
+        }
+    }
+
+    // Subtree listeners of an operation and all its ancestors, as they were at given generation of the operation tree
+    private static final class SubtreeListeners
+    {
+        private final int _generation;
+        private final ListenerRegistrationImpl[] _registrations;
+
+        private SubtreeListeners( int generation, ListenerRegistrationImpl[] registrations )
+        {
+            this._generation = generation;
+            this._registrations = registrations;
+        }
+    }
+
+    private final class OperationHandleImpl
+        implements OperationHandle
+    {
+        private final StatusInfoInfo _info;
+        private final int _generation;
+
+        public OperationHandleImpl( StatusInfoInfo info )
+        {
+            this._info = info;
+            this._generation = info.getGeneration();
+        }
+
+        @Override
+        public String getReceipt()
+        {
+            return this._info.getReceipt();
+        }
+
+        @Override
+        public String getID()
+        {
+            return this._info.getStatusInfo().getID();
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return this._info.getGeneration() == this._generation;
+        }
+
+        @Override
+        public void update( int amountOfSteps )
+        {
+            updateStatus( this.checkActive(), amountOfSteps );
+        }
+
+        @Override
+        public boolean end()
+        {
+            return this.isActive() && endStatus( this._info );
+        }
+
+        @Override
+        public OperationHandle subOperation( String name )
+        {
+            return this.subOperation( name, NO_MAX_STEPS );
+        }
+
+        @Override
+        public OperationHandle subOperation( String name, int maxSteps )
+        {
+            return new OperationHandleImpl( startStatus( this.checkActive(), Thread.currentThread(), name, maxSteps,
+                false ) );
+        }
+
+        @Override
+        public OperationHandle subOperation( String name, int maxSteps, double shareOfParent )
+        {
+            validateShareOfParent( shareOfParent );
+            return new OperationHandleImpl( startStatus( this.checkActive(), Thread.currentThread(), name, maxSteps,
+                false, shareOfParent ) );
+        }
+
+        private StatusInfoInfo checkActive()
+        {
+            if( !this.isActive() )
+            {
+                throw new NoOperationInProgressException( "Operation with receipt " + this._info.getReceipt()
+                    + " has already ended." );
+            }
+            return this._info;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            return this == obj
+                || (obj instanceof OperationCreationResult && this.getReceipt().equals(
+                    ((OperationCreationResult) obj).getReceipt() ));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.getReceipt().hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Operation(id=" + this.getID() + ",receipt=" + this.getReceipt() + ",active=" + this.isActive()
+                + ")";
+        }
+    }
+
+    /**
+     * Operations in progress for a single thread, in the order they were started. All modifications are done while
+     * holding the lock of this object, so operations of different threads never contend with each other. The stack is
+     * a chain of operations linked from the topmost one downwards. Links never change once an operation has been
+     * pushed, so readers never need the lock, and reading the topmost operation gives the whole stack as it was at that
+     * moment.
+     */
+    private static class ThreadStack extends AbstractSpinLockable
+    {
+        private final Thread _thread;
+
+        private volatile StatusInfoInfo _current;
+
+        // Set when this stack has become empty, before it is removed from the registry; guarded by the lock of this
+        // object
+        private boolean _discarded;
+
+        public ThreadStack( Thread thread )
+        {
+            this._thread = thread;
+            this._current = null;
+            this._discarded = false;
+        }
+
+        public Thread getThread()
+        {
+            return this._thread;
+        }
+
+        public StatusInfoInfo getCurrent()
+        {
+            return this._current;
+        }
+
+        public void push( StatusInfoInfo info )
+        {
+            info._below = this._current;
+            this._current = info;
+        }
+
+        public StatusInfoInfo pop()
+        {
+            StatusInfoInfo result = this._current;
+            this._current = result.getBelow();
+            return result;
+        }
+
+        public boolean isDiscarded()
+        {
+            return this._discarded;
+        }
+
+        public void discard()
+        {
+            this._discarded = true;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( StatusInfoServiceImpl.class );
+
+    @Uses
+    private ServiceDescriptor _descriptor;
+
+    private StatusInfoSettings _settings;
+    private OperationIDGenerator _idGenerator;
+    private Clock _clock;
+    // Not null only when the clock is read periodically
+    private CachedClock _cachedClock;
+    // Clock given to status infos, null when operations are not timed
+    private Clock _operationClock;
+    private ListenerRegistry _listeners;
+    // Amount of subtree listeners of operations in progress, so that events need not look for them when there are none
+    private AtomicInteger _amountOfSubtreeListeners;
+    // Not null only when dispatching asynchronously
+    private AsyncDispatcher<StatusInfoInfo> _dispatcher;
+    private ConcurrentMap<String, StatusInfoInfo> _statuses;
+    private ConcurrentMap<Thread, ThreadStack> _threadStacks;
+    // Operations which are not in any stack, by receipt: asynchronous operations and operations started in bulk
+    private ConcurrentMap<String, StatusInfoInfo> _detachedStatuses;
+    // Not null only when reaping leaked operations
+    private OperationReaper _reaper;
+    // Stacks not yet inspected during the current round of reaping; only accessed by the reaper thread
+    private Iterator<ThreadStack> _reaperCursor;
+    // Operations not in any stack not yet inspected during the current round, once all stacks have been inspected
+    private Iterator<StatusInfoInfo> _detachedReaperCursor;
+    // Not null only when collecting metrics
+    private ConcurrentMap<String, OperationStatistics> _metrics;
+    // Trackers of operation names with a tracking policy, null when there are none; never modified once activated
+    private Map<String, OperationTracker> _trackers;
+
+    @Override
+    public void activate()
+        throws Exception
+    {
+        StatusInfoSettings settings = this._descriptor == null ? null : this._descriptor
+            .metaInfo( StatusInfoSettings.class );
+        this._settings = settings == null ? new StatusInfoSettings() : settings;
+        this._idGenerator = this._settings.getIDGenerator() == null ? new StripedIDGenerator() : this._settings
+            .getIDGenerator();
+        this._clock = this._settings.getClock() == null ? SystemClock.INSTANCE : this._settings.getClock();
+        if( this._settings.getClockResolutionNanos() > 0L )
+        {
+            this._cachedClock = new CachedClock( "status-info-clock", this._clock,
+                this._settings.getClockResolutionNanos() );
+            this._cachedClock.start();
+            this._clock = this._cachedClock;
+        }
+        // Reaping operations without updates needs the update times
+        this._operationClock = this._settings.isTiming()
+            || (this._settings.isReaping() && this._settings.getMaxOperationAgeNanos() > 0L) ? this._clock : null;
+        this._listeners = new ListenerRegistry( new ListenerRegistry.SubtreeListenerRemover()
+        {
+            @Override
+            public void subtreeListenerUnregistered( ListenerRegistrationImpl registration )
+            {
+                removeSubtreeListener( registration );
+            }
+        } );
+        this._amountOfSubtreeListeners = new AtomicInteger();
+        this._statuses = new ConcurrentHashMap<String, StatusInfoInfo>();
+        this._threadStacks = new ConcurrentHashMap<Thread, ThreadStack>();
+        this._detachedStatuses = new ConcurrentHashMap<String, StatusInfoInfo>();
+        if( this._settings.isCollectingMetrics() )
+        {
+            this._metrics = new ConcurrentHashMap<String, OperationStatistics>();
+        }
+        Map<String, TrackingPolicy> policies = this._settings.getTrackingPolicies();
+        if( !policies.isEmpty() )
+        {
+            this._trackers = new HashMap<String, OperationTracker>();
+            for( Map.Entry<String, TrackingPolicy> entry : policies.entrySet() )
+            {
+                this._trackers.put( entry.getKey(), new OperationTracker( entry.getValue(),
+                    this._settings.getVerbosity() ) );
+            }
+        }
+        if( DispatchMode.ASYNCHRONOUS.equals( this._settings.getDispatchMode() ) )
+        {
+            this._dispatcher = new AsyncDispatcher<StatusInfoInfo>( "status-info-dispatcher",
+                this._settings.getDispatcherThreads(), this._settings.getBufferSize(),
+                this._settings.getWaitPolicy(), this._settings.getOverflowPolicy(),
+                new AsyncDispatcher.EventHandler<StatusInfoInfo>()
+                {
+                    @Override
+                    public void handle( StatusInfoInfo subject, ChangeType type, int stepsAdded )
+                    {
+                        deliverToListeners( subject, type, stepsAdded );
+                    }
+                } );
+            this._dispatcher.start();
+        }
+        if( this._settings.isReaping() )
+        {
+            this._reaper = new OperationReaper( "status-info-reaper", this._settings.getReaperPeriodNanos(),
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        reapLeakedOperations();
+                    }
+                } );
+            this._reaper.start();
+        }
+    }
+
+    @Override
+    public void passivate()
+        throws Exception
+    {
+        if( this._reaper != null )
+        {
+            this._reaper.stop();
+            this._reaper = null;
+            this._reaperCursor = null;
+            this._detachedReaperCursor = null;
+        }
+        if( this._dispatcher != null )
+        {
+            this._dispatcher.stop();
+            this._dispatcher = null;
+        }
+        if( this._cachedClock != null )
+        {
+            this._cachedClock.stop();
+            this._cachedClock = null;
+        }
+        this._listeners.clear();
+        this._statuses.clear();
+        this._threadStacks.clear();
+        this._detachedStatuses.clear();
+        this._listeners = null;
+        this._statuses = null;
+        this._threadStacks = null;
+        this._detachedStatuses = null;
+        this._metrics = null;
+        this._trackers = null;
+        this._settings = null;
+        this._idGenerator = null;
+        this._clock = null;
+        this._operationClock = null;
+    }
+
+    @Override
+    public <ReturnType, ExceptionType extends Throwable> ReturnType performOperation( String name,
+        Operation<ReturnType, ExceptionType> operation )
+        throws ExceptionType
+    {
+        return this.performOperation( name, NO_MAX_STEPS, operation );
+    }
+
+    @Override
+    public <ReturnType, ExceptionType extends Throwable> ReturnType performOperation( String name, int maxSteps,
+        Operation<ReturnType, ExceptionType> operation )
+        throws ExceptionType
+    {
+        OperationTracker tracker = this._trackers == null || name == null ? null : this._trackers.get( name );
+        if( tracker != null && !tracker.isTracked() )
+        {
+            return this.performUntrackedOperation( name, operation );
+        }
+
+        StatusInfoInfo info = this.startStatus( this.currentStatusInThisThread(), Thread.currentThread(), name,
+            maxSteps, false );
+        boolean succeeded = false;
+        try
+        {
+            ReturnType result = operation.doOperation();
+            succeeded = true;
+            return result;
+        }
+        finally
+        {
+            if( !succeeded && info.getStatistics() != null )
+            {
+                info.getStatistics().failed();
+            }
+            if( this.endStatus( info ) && LOGGER.isDebugEnabled() )
+            {
+                long duration = info.getStatusInfo().getDuration();
+                if( duration != StatusInfo.NO_TIME )
+                {
+                    LOGGER.debug( "Operation " + name + " took " + TimeUnit.NANOSECONDS.toMillis( duration ) + " ms." );
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an operation without tracking it. The operation is only counted in the metrics of its name, so operations
+     * and updates within it go to the nearest tracked operation.
+     */
+    protected <ReturnType, ExceptionType extends Throwable> ReturnType performUntrackedOperation( String name,
+        Operation<ReturnType, ExceptionType> operation )
+        throws ExceptionType
+    {
+        OperationStatistics statistics = this._metrics == null ? null : this.getOrCreateStatistics( name );
+        if( statistics == null )
+        {
+            return operation.doOperation();
+        }
+
+        statistics.started();
+        boolean succeeded = false;
+        try
+        {
+            ReturnType result = operation.doOperation();
+            succeeded = true;
+            return result;
+        }
+        finally
+        {
+            if( !succeeded )
+            {
+                statistics.failed();
+            }
+            statistics.completed( StatusInfo.NO_TIME );
+        }
+    }
+
+    @Override
+    public <ReturnType> CompletionStage<ReturnType> performOperationAsync( String name,
+        final Supplier<? extends CompletionStage<ReturnType>> operation )
+    {
+        return this.performOperationAsync( name, NO_MAX_STEPS,
+            new Function<OperationHandle, CompletionStage<ReturnType>>()
+            {
+                @Override
+                public CompletionStage<ReturnType> apply( OperationHandle handle )
+                {
+                    return operation.get();
+                }
+            } );
+    }
+
+    @Override
+    public <ReturnType> CompletionStage<ReturnType> performOperationAsync( String name, int maxSteps,
+        Function<? super OperationHandle, ? extends CompletionStage<ReturnType>> operation )
+    {
+        final StatusInfoInfo info = this.startAsyncStatus( name, maxSteps );
+        CompletionStage<ReturnType> stage = null;
+        try
+        {
+            stage = operation.apply( new OperationHandleImpl( info ) );
+        }
+        finally
+        {
+            if( stage == null )
+            {
+                this.endAsyncOperation( info, false );
+            }
+        }
+        if( stage == null )
+        {
+            throw new IllegalStateException( "Asynchronous operation " + name + " returned no stage." );
+        }
+
+        return stage.whenComplete( new BiConsumer<ReturnType, Throwable>()
+        {
+            @Override
+            public void accept( ReturnType result, Throwable error )
+            {
+                endAsyncOperation( info, error == null );
+            }
+        } );
+    }
+
+    @Override
+    public ListenerRegistration addStatusInfoListener( StatusInfoListener listener )
+    {
+        return this._listeners.add( listener, null, null );
+    }
+
+    @Override
+    public ListenerRegistration addStatusInfoListener( StatusInfoListener listener,
+        StatusInfoSubscription subscription )
+    {
+        NullArgumentException.validateNotNull( "Subscription", subscription );
+
+        String subtreeReceipt = subscription.getSubtreeReceipt();
+        ListenerRegistrationImpl registration = null;
+        if( subtreeReceipt == null )
+        {
+            registration = this._listeners.add( listener, null, subscription );
+        }
+        else
+        {
+            StatusInfoInfo info = this._statuses.get( subtreeReceipt );
+            if( info == null )
+            {
+                throw new NoOperationInProgressException( "No operation with given receipt currently in progress." );
+            }
+            registration = this._listeners.add( listener, subtreeReceipt, subscription );
+
+            // The operation might have been ended from another thread meanwhile
+            if( info.addSubtreeListener( registration ) )
+            {
+                info.subtreeListenersChanged();
+                this._amountOfSubtreeListeners.incrementAndGet();
+            }
+            else
+            {
+                registration.unregister();
+            }
+        }
+        return registration;
+    }
+
+    @Override
+    public ListenerRegistration addStatusInfoListenerUntilEndOfCurrentOperation( StatusInfoListener listener )
+    {
+        // Find the innermost operation in this thread
+        StatusInfoInfo info = this.currentStatusInThisThread();
+        if( info != null )
+        {
+            ListenerRegistrationImpl registration = this._listeners.add( listener, info.getReceipt(), null );
+
+            // The operation might have been ended from another thread meanwhile
+            if( !info.addDedicatedListener( registration ) )
+            {
+                registration.unregister();
+            }
+            return registration;
+        }
+        else
+        {
+            throw new NoOperationInProgressException( "No operation currently in progress." );
+        }
+    }
+
+    @Override
+    public void removeStatusInfoListener( StatusInfoListener listener )
+    {
+        ListenerRegistration registration = this._listeners.findActive( listener );
+        if( registration != null )
+        {
+            registration.unregister();
+        }
+    }
+
+    @Override
+    public OperationCreationResult startOperation( String name )
+    {
+        return this.startOperation( Thread.currentThread(), name, NO_MAX_STEPS );
+    }
+
+    @Override
+    public OperationCreationResult startOperation( String name, int maxSteps )
+    {
+        return this.startOperation( Thread.currentThread(), name, maxSteps );
+    }
+
+    @Override
+    public OperationCreationResult startOperation( Thread thread, String name )
+    {
+        return this.startOperation( thread, name, NO_MAX_STEPS );
+    }
+
+    @Override
+    public OperationCreationResult startOperation( Thread thread, String name, int maxSteps )
+    {
+        return this.doStartOperation( null, thread, name, maxSteps );
+    }
+
+    @Override
+    public OperationHandle startOperationWithHandle( String name )
+    {
+        return this.startOperationWithHandle( name, NO_MAX_STEPS );
+    }
+
+    @Override
+    public OperationHandle startOperationWithHandle( String name, int maxSteps )
+    {
+        return new OperationHandleImpl( this.startStatus( this.currentStatusInThisThread(), Thread.currentThread(),
+            name, maxSteps, false ) );
+    }
+
+    @Override
+    public OperationHandle startOperationWithHandle( String name, int maxSteps, double shareOfParent )
+    {
+        validateShareOfParent( shareOfParent );
+        return new OperationHandleImpl( this.startStatus( this.currentStatusInThisThread(), Thread.currentThread(),
+            name, maxSteps, false, shareOfParent ) );
+    }
+
+    @Override
+    public OperationHandle startSharedOperation( String name, int maxSteps )
+    {
+        return new OperationHandleImpl( this.startStatus( this.currentStatusInThisThread(), Thread.currentThread(),
+            name, maxSteps, true ) );
+    }
+
+    @Override
+    public OperationCreationResult startSubOperation( String parentReceipt, String name )
+    {
+        return this.doStartOperation( parentReceipt, Thread.currentThread(), name, NO_MAX_STEPS );
+    }
+
+    @Override
+    public List<OperationCreationResult> startSubOperations( String parentReceipt, String name, int maxSteps,
+        int amount )
+    {
+        if( amount < 0 )
+        {
+            throw new IllegalArgumentException( "Amount of operations must be at least 0." );
+        }
+
+        List<OperationCreationResult> result = Collections.emptyList();
+        if( amount > 0 )
+        {
+            StatusInfoInfo parent = parentReceipt == null ? this.currentStatusInThisThread() : this._statuses
+                .get( parentReceipt );
+            result = Collections.unmodifiableList( Arrays.<OperationCreationResult> asList( this.startStatuses( parent,
+                name, maxSteps, amount ) ) );
+        }
+        return result;
+    }
+
+    @Override
+    public boolean endOperation( String receipt )
+    {
+        return this.doEndOperation( receipt );
+    }
+
+    @Override
+    public int endOperations( Collection<String> receipts )
+    {
+        Set<StatusInfoInfo> requested = new LinkedHashSet<StatusInfoInfo>();
+        for( String receipt : receipts )
+        {
+            StatusInfoInfo info = receipt == null ? null : this._statuses.get( receipt );
+            if( info != null )
+            {
+                requested.add( info );
+            }
+        }
+
+        // Ending an operation also ends the operations nested within it, which may be among the requested ones
+        int result = 0;
+        List<StatusInfoInfo> ended = new ArrayList<StatusInfoInfo>();
+        for( StatusInfoInfo info : requested )
+        {
+            StatusInfoInfo top = this.removeStatus( info );
+            for( StatusInfoInfo removed = top; top != null && removed != info.getBelow(); removed = removed.getBelow() )
+            {
+                ended.add( removed );
+                if( requested.contains( removed ) )
+                {
+                    ++result;
+                }
+            }
+        }
+
+        this.notifyEnded( ended.toArray( new StatusInfoInfo[ended.size()] ) );
+        return result;
+    }
+
+    @Override
+    public void updateCurrentOperation( int amountOfSteps )
+    {
+        this.doUpdateOperation( null, amountOfSteps );
+    }
+
+    @Override
+    public void updateOperation( String receipt, int amountOfSteps )
+    {
+        this.doUpdateOperation( receipt, amountOfSteps );
+    }
+
+    @Override
+    public void updateOperations( String[] receipts, int[] amountsOfSteps )
+    {
+        if( receipts.length != amountsOfSteps.length )
+        {
+            throw new IllegalArgumentException( "There must be as many amounts of steps as there are receipts." );
+        }
+
+        // Find all operations first, so that nothing is updated if any of them is missing
+        StatusInfoInfo[] infos = new StatusInfoInfo[receipts.length];
+        for( int idx = 0; idx < receipts.length; ++idx )
+        {
+            infos[idx] = receipts[idx] == null ? null : this._statuses.get( receipts[idx] );
+            if( infos[idx] == null )
+            {
+                throw new NoOperationInProgressException( "No operation in progress with receipt " + receipts[idx]
+                    + "." );
+            }
+        }
+
+        StatusInfoInfo[] changed = new StatusInfoInfo[infos.length];
+        int[] stepsAdded = new int[infos.length];
+        int amountChanged = 0;
+        boolean coalescing = this._settings.isCoalescingChanges();
+        for( int idx = 0; idx < infos.length; ++idx )
+        {
+            this.addSteps( infos[idx], amountsOfSteps[idx] );
+            int steps = coalescing ? this.takeCoalescedSteps( infos[idx], amountsOfSteps[idx] )
+                : amountsOfSteps[idx];
+            if( !coalescing || steps != 0 )
+            {
+                changed[amountChanged] = infos[idx];
+                stepsAdded[amountChanged] = steps;
+                ++amountChanged;
+            }
+        }
+        this.notifyListeners( changed, amountChanged, ChangeType.CHANGED, stepsAdded );
+    }
+
+    @Override
+    public OperationCreationResult getCurrentOperation()
+    {
+        return this.currentStatusInThisThread();
+    }
+
+    @Override
+    public OperationSnapshot getSnapshotOfCurrentState()
+    {
+        return this.doGetSnapshot();
+    }
+
+    @Override
+    public OperationMetrics getOperationMetrics( String name )
+    {
+        OperationStatistics statistics = this._metrics == null || name == null ? null : this._metrics.get( name );
+        return statistics == null ? null : statistics.snapshot();
+    }
+
+    @Override
+    public Map<String, OperationMetrics> getAllOperationMetrics()
+    {
+        Map<String, OperationMetrics> result = new HashMap<String, OperationMetrics>();
+        if( this._metrics != null )
+        {
+            for( OperationStatistics statistics : this._metrics.values() )
+            {
+                OperationMetrics metrics = statistics.snapshot();
+                result.put( metrics.getOperationName(), metrics );
+            }
+        }
+        return result;
+    }
+
+    protected void doUpdateOperation( String receipt, int amountOfSteps )
+    {
+        StatusInfoInfo info = null;
+        if( receipt == null )
+        {
+            info = this.currentStatusInThisThread();
+        }
+        else
+        {
+            info = this._statuses.get( receipt );
+        }
+
+        if( info == null )
+        {
+            throw new NoOperationInProgressException( "No operation in progress "
+                + (receipt == null ? " currently" : "with receipt " + receipt) + "." );
+        }
+
+        this.updateStatus( info, amountOfSteps );
+    }
+
+    protected OperationCreationResult doStartOperation( String parentReceipt, Thread thread, String name, int maxSteps )
+    {
+        StatusInfoInfo parent = null;
+        if( parentReceipt == null )
+        {
+            parent = this.currentStatusInThisThread();
+        }
+        else
+        {
+            parent = this._statuses.get( parentReceipt );
+        }
+
+        StatusInfoInfo info = this.startStatus( parent, thread, name, maxSteps, false );
+        return info;
+    }
+
+    protected boolean doEndOperation( String receipt )
+    {
+        StatusInfoInfo info = this._statuses.get( receipt );
+        //            if( info == null )
+        //            {
+        // TODO maybe just ignore instead of throwing?
+        //throw new NoOperationInProgressException( "Could not find operation with receipt " + receipt
+        //    + " to end." );
+        //            }
+        return info != null && this.endStatus( info );
+    }
+
+    protected void updateStatus( StatusInfoInfo info, int amountOfSteps )
+    {
+        this.addSteps( info, amountOfSteps );
+        if( this._settings.isCoalescingChanges() )
+        {
+            this.coalesceChange( info, amountOfSteps );
+        }
+        else
+        {
+            this.notifyListeners( info, ChangeType.CHANGED, amountOfSteps );
+        }
+    }
+
+    private void addSteps( StatusInfoInfo info, int amountOfSteps )
+    {
+        info.getStatusInfo().addCurrentSteps( amountOfSteps );
+        if( info.getStatistics() != null )
+        {
+            info.getStatistics().stepsAdded( amountOfSteps );
+        }
+    }
+
+    protected void coalesceChange( StatusInfoInfo info, int amountOfSteps )
+    {
+        int steps = this.takeCoalescedSteps( info, amountOfSteps );
+        if( steps != 0 )
+        {
+            this.notifyListeners( info, ChangeType.CHANGED, steps );
+        }
+    }
+
+    /**
+     * Adds given steps to the pending steps of the operation, and takes the pending steps if listeners should be
+     * notified about them now.
+     * 
+     * @param info The updated operation.
+     * @param amountOfSteps The amount of steps added to the operation.
+     * @return The steps to notify listeners about, or {@code 0} if listeners should not be notified yet.
+     */
+    private int takeCoalescedSteps( StatusInfoInfo info, int amountOfSteps )
+    {
+        int result = 0;
+        int pending = info.addPendingSteps( amountOfSteps );
+        int threshold = this._settings.getCoalescingStepThreshold();
+        long interval = this._settings.getCoalescingIntervalNanos();
+        long now = 0L;
+        boolean notify = threshold > 0 && Math.abs( pending ) >= threshold;
+        if( !notify && interval > 0L )
+        {
+            now = this._clock.nanoTime();
+            notify = now - info.getLastChangeNotification() >= interval;
+        }
+
+        if( notify )
+        {
+            result = info.takePendingStepsIfInProgress();
+            if( result != 0 )
+            {
+                info.setLastChangeNotification( interval > 0L && now == 0L ? this._clock.nanoTime() : now );
+            }
+        }
+        return result;
+    }
+
+    protected StatusInfoInfo startStatus( StatusInfoInfo parent, Thread thread, String name, int maxSteps,
+        boolean sharedProgress )
+    {
+        return this.startStatus( parent, thread, name, maxSteps, sharedProgress, 0.0 );
+    }
+
+    protected StatusInfoInfo startStatus( StatusInfoInfo parent, Thread thread, String name, int maxSteps,
+        boolean sharedProgress, double shareOfParent )
+    {
+        String id = this.newID();
+        String receipt = this.newReceipt();
+        OperationStatistics statistics = this._metrics == null || name == null ? null : this
+            .getOrCreateStatistics( name );
+
+        // Create the operation before locking, so that only linking it to the stack happens while holding the lock
+        StatusInfoInfo info = this.newStatus( parent, id, receipt, thread, name, maxSteps, sharedProgress, statistics,
+            shareOfParent );
+        this._statuses.put( receipt, info );
+        boolean registered = false;
+        while( !registered )
+        {
+            ThreadStack stack = this.getOrCreateStack( thread );
+            boolean discarded = false;
+            boolean parentEnded = false;
+            stack.lock();
+            try
+            {
+                // Retry if the stack was discarded right after we got it
+                discarded = stack.isDiscarded();
+                if( !discarded )
+                {
+                    if( parent == null )
+                    {
+                        this.registerStatus( stack, info );
+                        registered = true;
+                    }
+                    else
+                    {
+                        parent.lock();
+                        try
+                        {
+                            // Parent might have been ended from another thread meanwhile
+                            parentEnded = !parent.acceptsChildren();
+                            if( !parentEnded )
+                            {
+                                this.registerStatus( stack, info );
+                                registered = true;
+                            }
+                        }
+                        finally
+                        {
+                            parent.unlock();
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                stack.unlock();
+            }
+
+            if( discarded )
+            {
+                // Whoever discarded it might not have removed it yet
+                this._threadStacks.remove( thread, stack );
+            }
+            if( parentEnded )
+            {
+                parent = null;
+            }
+
+            if( !registered && parent == null && info.getParent() != null )
+            {
+                info = this.newStatus( null, id, receipt, thread, name, maxSteps, sharedProgress, statistics,
+                    shareOfParent );
+                this._statuses.put( receipt, info );
+            }
         }
 
-        public String getReceipt()
+        if( info.getStatistics() != null )
         {
-            return this._receipt;
+            info.getStatistics().started();
         }
+        this.notifyListeners( info, ChangeType.BEGAN, 0 );
+        return info;
+    }
 
-        public StatusInfoInfo getParent()
+    /**
+     * Starts given amount of sibling operations, which are not in the stack of any thread, so that each of them can be
+     * ended on its own. They are not ended along with their parent, so unlike in
+     * {@link #startStatus(StatusInfoInfo, Thread, String, int, boolean)}, the parent is not locked while they are
+     * registered: if the parent ends meanwhile, they simply outlive it, like sub-operations started in other threads.
+     */
+    protected StatusInfoInfo[] startStatuses( StatusInfoInfo parent, String name, int maxSteps, int amount )
+    {
+        OperationStatistics statistics = this._metrics == null || name == null ? null : this
+            .getOrCreateStatistics( name );
+        StatusInfoInfo actualParent = parent == null || parent.acceptsChildren() ? parent : null;
+        StatusInfoInfo[] result = new StatusInfoInfo[amount];
+        for( int idx = 0; idx < amount; ++idx )
         {
-            return this._parent;
+            result[idx] = this.newStatus( actualParent, this.newID(), this.newReceipt(), null, name, maxSteps, false,
+                statistics, 0.0 );
+            this._statuses.put( result[idx].getReceipt(), result[idx] );
+            this._detachedStatuses.put( result[idx].getReceipt(), result[idx] );
         }
 
-        public Set<StatusInfoInfo> getChildren()
+        if( statistics != null )
         {
-            return this._children;
+            statistics.started( amount );
         }
+        this.notifyListeners( result, amount, ChangeType.BEGAN, new int[amount] );
+        return result;
     }
 
-    private static class StatusListenerInfo
+    protected StatusInfoInfo startAsyncStatus( String name, int maxSteps )
     {
-        private final StatusInfoListener _listener;
-        private final String _associatedStatusReceipt;
-
-        public StatusListenerInfo( StatusInfoListener listener )
+        OperationStatistics statistics = this._metrics == null || name == null ? null : this
+            .getOrCreateStatistics( name );
+        StatusInfoInfo info = this.newStatus( null, this.newID(), this.newReceipt(), null, name, maxSteps, false,
+            statistics, 0.0 );
+        this._statuses.put( info.getReceipt(), info );
+        this._detachedStatuses.put( info.getReceipt(), info );
+        if( statistics != null )
         {
-            this( listener, null );
+            statistics.started();
         }
+        this.notifyListeners( info, ChangeType.BEGAN, 0 );
+        return info;
+    }
 
-        public StatusListenerInfo( StatusInfoListener listener, String associatedStatusReceipt )
+    private void endAsyncOperation( StatusInfoInfo info, boolean succeeded )
+    {
+        if( !succeeded && info.getStatistics() != null )
         {
-            this._listener = listener;
-            this._associatedStatusReceipt = associatedStatusReceipt;
+            info.getStatistics().failed();
         }
+        this.endStatus( info );
+    }
 
-        public StatusInfoListener getListener()
+    private StatusInfoInfo newStatus( StatusInfoInfo parent, String id, String receipt, Thread thread, String name,
+        int maxSteps, boolean sharedProgress, OperationStatistics statistics, double shareOfParent )
+    {
+        StatusInfoImpl parentInfo = parent == null ? null : parent.getStatusInfo();
+        StatusInfoInfo result = new StatusInfoInfo( parent, new StatusInfoImpl( parentInfo, id, name, thread,
+            maxSteps, sharedProgress, this._operationClock, statistics, shareOfParent ), receipt );
+        if( this._settings.getCoalescingIntervalNanos() > 0L )
         {
-            return this._listener;
+            result.setLastChangeNotification( this._clock.nanoTime() );
         }
-
-        public String getAssociatedStatusReceipt()
+        if( this._settings.isRecordingCreationSites() )
         {
-            return this._associatedStatusReceipt;
+            result._creationSite = new Throwable( "Operation " + name + " was started here." );
         }
+        return result;
     }
 
-    private List<StatusListenerInfo> _listeners;
-    private Object _listenersLock;
-    private Map<String, StatusInfoInfo> _statuses;
-    private Object _statusesLock;
-
-    @Override
-    public void activate()
-        throws Exception
+    // Must be called while holding the lock of the stack
+    private void registerStatus( ThreadStack stack, StatusInfoInfo info )
     {
-        this._listenersLock = new Object();
-        this._statusesLock = new Object();
-        this._listeners = new ArrayList<StatusListenerInfo>();
-        this._statuses = new HashMap<String, StatusInfoInfo>();
+        info._stack = stack;
+        stack.push( info );
     }
 
-    @Override
-    public void passivate()
-        throws Exception
+    protected boolean endStatus( StatusInfoInfo ended )
     {
-        this._listeners.clear();
-        this._statuses.clear();
-        this._statuses = null;
-        this._statuses = null;
-        this._listenersLock = null;
-        this._statusesLock = null;
-    }
+        StatusInfoInfo top = this.removeStatus( ended );
+        boolean result = top != null;
 
-    @Override
-    public <ReturnType, ExceptionType extends Throwable> ReturnType performOperation( String name,
-        Operation<ReturnType, ExceptionType> operation )
-        throws ExceptionType
-    {
-        return this.performOperation( name, NO_MAX_STEPS, operation );
+        // Notify listeners from the innermost operation outwards, dedicated listeners are removed once they have been
+        // notified. The links between ended operations do not change anymore.
+        if( result )
+        {
+            StatusInfoInfo info = top;
+            StatusInfoInfo last = ended.getBelow();
+            while( info != last )
+            {
+                int pendingSteps = info.takePendingSteps();
+                if( pendingSteps != 0 )
+                {
+                    this.notifyListeners( info, ChangeType.CHANGED, pendingSteps );
+                }
+                if( info.getStatistics() != null )
+                {
+                    info.getStatistics().completed( info.getStatusInfo().getDuration() );
+                }
+                this.notifyListeners( info, ChangeType.ENDED, 0 );
+                info = info.getBelow();
+            }
+        }
+
+        return result;
     }
 
-    @Override
-    public <ReturnType, ExceptionType extends Throwable> ReturnType performOperation( String name, int maxSteps,
-        Operation<ReturnType, ExceptionType> operation )
-        throws ExceptionType
+    /**
+     * Ends given operation and all operations nested within it in the same thread, and removes them from the stack
+     * and the registry. Listeners are not notified.
+     * 
+     * @param ended The operation to end.
+     * @return The innermost ended operation, or {@code null} if given operation had already ended.
+     */
+    private StatusInfoInfo removeStatus( StatusInfoInfo ended )
     {
-        OperationCreationResult creation = this.startOperation( name, maxSteps );
-        try
+        StatusInfoInfo top = null;
+        ThreadStack stack = ended.getStack();
+        if( stack == null )
         {
-            return operation.doOperation();
+            // Detached operations have nothing nested within them in the same thread
+            if( this._detachedStatuses.remove( ended.getReceipt(), ended ) )
+            {
+                top = ended;
+                ended.getStatusInfo().markEnded(
+                    this._operationClock == null ? StatusInfo.NO_TIME : this._operationClock.nanoTime() );
+                ended.markEnded();
+                this._statuses.remove( ended.getReceipt() );
+            }
         }
-        finally
+        else
         {
-            this.endOperation( creation.getReceipt() );
+            boolean emptied = false;
+            stack.lock();
+            try
+            {
+                // Someone else might have ended it already
+                if( !ended.isEnded() )
+                {
+                    // Only unlink the operation and all operations nested within it in the same thread while holding
+                    // the lock, the rest is done below
+                    top = stack.getCurrent();
+                    StatusInfoInfo info = null;
+                    while( info != ended )
+                    {
+                        info = stack.pop();
+                        info.markEnded();
+                    }
+                    emptied = stack.getCurrent() == null;
+                    if( emptied )
+                    {
+                        stack.discard();
+                    }
+                }
+            }
+            finally
+            {
+                stack.unlock();
+            }
+
+            if( top != null )
+            {
+                // The links between unlinked operations do not change anymore
+                long endTime = this._operationClock == null ? StatusInfo.NO_TIME : this._operationClock.nanoTime();
+                StatusInfoInfo last = ended.getBelow();
+                for( StatusInfoInfo info = top; info != last; info = info.getBelow() )
+                {
+                    info.getStatusInfo().markEnded( endTime );
+                    this._statuses.remove( info.getReceipt() );
+                }
+                if( emptied )
+                {
+                    // Keeping empty stacks around would leak them for short-lived threads
+                    this._threadStacks.remove( stack.getThread(), stack );
+                }
+            }
         }
+        return top;
     }
 
-    @Override
-    public void addStatusInfoListener( StatusInfoListener listener )
+    /**
+     * Notifies listeners about the end of given operations, which have been removed with
+     * {@link #removeStatus(StatusInfoInfo)}. Listeners are first notified about the pending steps of all operations,
+     * and then about the end of all operations.
+     * 
+     * @param ended The ended operations, each nested operation before the operations it is nested within.
+     */
+    private void notifyEnded( StatusInfoInfo[] ended )
     {
-        synchronized( this._listenersLock )
+        StatusInfoInfo[] changed = new StatusInfoInfo[ended.length];
+        int[] pendingSteps = new int[ended.length];
+        int amountChanged = 0;
+        for( StatusInfoInfo info : ended )
         {
-            this._listeners.add( new StatusListenerInfo( listener ) );
+            int steps = info.takePendingSteps();
+            if( steps != 0 )
+            {
+                changed[amountChanged] = info;
+                pendingSteps[amountChanged] = steps;
+                ++amountChanged;
+            }
+            if( info.getStatistics() != null )
+            {
+                info.getStatistics().completed( info.getStatusInfo().getDuration() );
+            }
         }
+        this.notifyListeners( changed, amountChanged, ChangeType.CHANGED, pendingSteps );
+        this.notifyListeners( ended, ended.length, ChangeType.ENDED, new int[ended.length] );
     }
 
-    @Override
-    public void addStatusInfoListenerUntilEndOfCurrentOperation( StatusInfoListener listener )
+    /**
+     * Inspects the stacks of at most as many threads, and operations not bound to any thread, as the reaper budget
+     * allows, continuing from where the previous run stopped. Called periodically by the reaper thread.
+     */
+    protected void reapLeakedOperations()
     {
-        synchronized( this._statusesLock )
+        long maxAge = this._settings.getMaxOperationAgeNanos();
+        long now = this._clock.nanoTime();
+        int budget = this._settings.getReaperBudget();
+        for( int inspected = 0; inspected < budget; ++inspected )
         {
-            // Find operation with no children in this thread
-            StatusInfoInfo info = this.currentChildlessStatusInThisThread();
-            if( info != null )
+            if( this._reaperCursor == null && this._detachedReaperCursor == null )
+            {
+                this._reaperCursor = this._threadStacks.values().iterator();
+            }
+            if( this._reaperCursor != null && !this._reaperCursor.hasNext() )
+            {
+                // Stacks done, continue with the operations not bound to any thread
+                this._reaperCursor = null;
+                this._detachedReaperCursor = this._detachedStatuses.values().iterator();
+            }
+
+            if( this._reaperCursor != null )
+            {
+                this.reapStack( this._reaperCursor.next(), now, maxAge );
+            }
+            else if( this._detachedReaperCursor.hasNext() )
             {
-                String associatedReceipt = info.getReceipt();
-                synchronized( this._listenersLock )
+                // Nothing nested within them is in the same thread, so only their own updates keep them alive
+                StatusInfoInfo info = this._detachedReaperCursor.next();
+                if( maxAge > 0L && now - info.getStatusInfo().getLastUpdateTime() > maxAge )
                 {
-                    this._listeners.add( new StatusListenerInfo( listener, associatedReceipt ) );
+                    this.handleLeak( info, "it has not been updated for "
+                        + TimeUnit.NANOSECONDS.toMillis( now - info.getStatusInfo().getLastUpdateTime() ) + " ms" );
                 }
             }
             else
             {
-                throw new NoOperationInProgressException( "No operation currently in progress." );
+                // Round complete, start next one during next run
+                this._detachedReaperCursor = null;
+                break;
             }
         }
     }
 
-    @Override
-    public void removeStatusInfoListener( final StatusInfoListener listener )
+    private void reapStack( ThreadStack stack, long now, long maxAge )
     {
-        synchronized( this._listenersLock )
+        if( Thread.State.TERMINATED.equals( stack.getThread().getState() ) )
         {
-            this._listeners.remove( Iterables.first( Iterables.filter( new Specification<StatusListenerInfo>()
+            // Ending the lowest operation ends all of them
+            StatusInfoInfo lowest = null;
+            for( StatusInfoInfo info = stack.getCurrent(); info != null; info = info.getBelow() )
             {
-                @Override
-                public boolean satisfiedBy( StatusListenerInfo item )
-                {
-                    return item.getListener().equals( listener );
-                }
-            }, this._listeners ) ) );
+                lowest = info;
+            }
+            if( lowest != null )
+            {
+                this.handleLeak( lowest, "its thread has terminated" );
+            }
+        }
+        else if( maxAge > 0L )
+        {
+            // Updates of nested operations keep the outer operations alive too
+            StatusInfoInfo stale = null;
+            StatusInfoInfo info = stack.getCurrent();
+            while( info != null && now - info.getStatusInfo().getLastUpdateTime() > maxAge )
+            {
+                stale = info;
+                info = info.getBelow();
+            }
+            if( stale != null )
+            {
+                this.handleLeak( stale, "it has not been updated for "
+                    + TimeUnit.NANOSECONDS.toMillis( now - stale.getStatusInfo().getLastUpdateTime() ) + " ms" );
+            }
         }
     }
 
-    @Override
-    public OperationCreationResult startOperation( String name )
+    private void handleLeak( StatusInfoInfo info, String reason )
     {
-        return this.startOperation( Thread.currentThread(), name, NO_MAX_STEPS );
+        StatusInfo statusInfo = info.getStatusInfo();
+        String operation = "operation " + statusInfo.getName() + " (id " + statusInfo.getID() + ") "
+            + ( statusInfo.getThread() == null ? "not bound to any thread" : "of thread "
+                + statusInfo.getThread().getName() );
+        if( LeakAction.END.equals( this._settings.getLeakAction() ) )
+        {
+            if( this.endStatus( info ) )
+            {
+                LOGGER.warn( "Ended leaked " + operation + ", because " + reason + ".", info.getCreationSite() );
+            }
+        }
+        else if( !info.isReportedAsLeak() )
+        {
+            info.setReportedAsLeak();
+            LOGGER.warn( "Leaked " + operation + ", because " + reason + ".", info.getCreationSite() );
+        }
     }
 
-    @Override
-    public OperationCreationResult startOperation( String name, int maxSteps )
+    protected OperationSnapshot doGetSnapshot()
     {
-        return this.startOperation( Thread.currentThread(), name, maxSteps );
-    }
+        int amountOfListeners = this._listeners.getAmountOfActive();
+        long frozenTime = this._clock.nanoTime();
 
-    @Override
-    public OperationCreationResult startOperation( Thread thread, String name )
-    {
-        return this.startOperation( thread, name, NO_MAX_STEPS );
-    }
+        // Read each stack once without locking: the stacks of different threads are read at different moments, and
+        // so are the steps of each operation, since nothing stops them from changing meanwhile
+        Map<StatusInfoImpl, StatusInfoImpl> frozen = new HashMap<StatusInfoImpl, StatusInfoImpl>();
+        List<ThreadSnapshot> threadSnapshots = new ArrayList<ThreadSnapshot>();
+        for( ThreadStack stack : this._threadStacks.values() )
+        {
+            StatusInfoInfo current = stack.getCurrent();
+            if( current != null )
+            {
+                List<StatusInfoSnapshot> infoSnapshots = new ArrayList<StatusInfoSnapshot>();
+                for( StatusInfoInfo info = current; info != null; info = info.getBelow() )
+                {
+                    infoSnapshots.add( new StatusInfoSnapshotImpl( this.freeze( info.getStatusInfo(), frozenTime,
+                        frozen ), info.getAmountOfDedicatedListeners() ) );
+                }
+                threadSnapshots.add( new ThreadSnapshotImpl( stack.getThread(), infoSnapshots ) );
+            }
+        }
 
-    @Override
-    public OperationCreationResult startOperation( Thread thread, String name, int maxSteps )
-    {
-        return this.doStartOperation( null, thread, name, maxSteps );
-    }
+        List<StatusInfoSnapshot> asyncSnapshots = new ArrayList<StatusInfoSnapshot>();
+        for( StatusInfoInfo info : this._detachedStatuses.values() )
+        {
+            asyncSnapshots.add( new StatusInfoSnapshotImpl( this.freeze( info.getStatusInfo(), frozenTime, frozen ),
+                info.getAmountOfDedicatedListeners() ) );
+        }
 
-    @Override
-    public OperationCreationResult startSubOperation( String parentReceipt, String name )
-    {
-        return this.doStartOperation( parentReceipt, Thread.currentThread(), name, NO_MAX_STEPS );
+        AsyncDispatcher<StatusInfoInfo> dispatcher = this._dispatcher;
+        return new OperationSnapshotImpl( threadSnapshots, asyncSnapshots, amountOfListeners, dispatcher == null ? 0L
+            : dispatcher.getAmountOfDroppedEvents() );
     }
 
-    @Override
-    public boolean endOperation( String receipt )
+    private StatusInfoImpl freeze( StatusInfoImpl info, long frozenTime, Map<StatusInfoImpl, StatusInfoImpl> frozen )
     {
-        return this.doEndOperation( receipt );
+        StatusInfoImpl result = frozen.get( info );
+        if( result == null )
+        {
+            StatusInfoImpl parent = (StatusInfoImpl) info.getParent();
+            result = info.freeze( parent == null ? null : this.freeze( parent, frozenTime, frozen ), frozenTime );
+            frozen.put( info, result );
+        }
+        return result;
     }
 
-    @Override
-    public void updateCurrentOperation( int amountOfSteps )
+    protected void notifyListeners( StatusInfoInfo info, ChangeType type, int stepsAdded )
     {
-        this.doUpdateOperation( null, amountOfSteps );
-    }
+        if( this._listeners.getAmountOfActive() == 0 )
+        {
+            // Nobody could be interested, and there are no dedicated listeners to remove
+            return;
+        }
 
-    @Override
-    public void updateOperation( String receipt, int amountOfSteps )
-    {
-        this.doUpdateOperation( receipt, amountOfSteps );
+        AsyncDispatcher<StatusInfoInfo> dispatcher = this._dispatcher;
+        if( dispatcher == null )
+        {
+            this.deliverToListeners( info, type, stepsAdded );
+        }
+        else
+        {
+            dispatcher.publish( info.getDispatchKey(), info, type, stepsAdded );
+        }
     }
 
-    @Override
-    public OperationSnapshot getSnapshotOfCurrentState()
+    protected void deliverToListeners( StatusInfoInfo info, ChangeType type, int stepsAdded )
     {
-        return this.doGetSnapshot();
+        StatusInfo statusInfo = info.getStatusInfo();
+        this.deliverToListeners( this._listeners.getRegistrations( statusInfo.getThread(), type ), statusInfo, type,
+            stepsAdded );
+        this.deliverToListeners( this._listeners.getUnboundRegistrations( type ), statusInfo, type, stepsAdded );
+        if( this._amountOfSubtreeListeners.get() > 0 )
+        {
+            this.deliverToListeners( info.getInheritedSubtreeListeners(), statusInfo, type,
+                stepsAdded );
+        }
+
+        if( ChangeType.ENDED.equals( type ) )
+        {
+            this.removeListenersOfEnded( info );
+        }
     }
 
-    protected void doUpdateOperation( String receipt, int amountOfSteps )
+    /**
+     * Notifies listeners about the same type of change of many operations. Each {@link BatchStatusInfoListener} is
+     * notified once about all the operations it is interested in, other listeners are notified about each operation
+     * separately. When events are dispatched asynchronously, they are published one by one.
+     * 
+     * @param infos The changed operations.
+     * @param amount The amount of operations at the beginning of the array which have changed.
+     * @param type The type of the change.
+     * @param stepsAdded The steps added to each operation, at the same index as the operation.
+     */
+    protected void notifyListeners( StatusInfoInfo[] infos, int amount, ChangeType type, int[] stepsAdded )
     {
-        StatusInfoInfo info = null;
-        boolean notify = false;
-        synchronized( this._statusesLock )
+        if( amount == 0 || this._listeners.getAmountOfActive() == 0 )
         {
-            if( receipt == null )
-            {
-                info = this.currentChildlessStatusInThisThread();
-            }
-            else
-            {
-                info = this._statuses.get( receipt );
-            }
-            notify = info != null;
-            if( notify )
-            {
-                info.getStatusInfo().addCurrentSteps( amountOfSteps );
-            }
-            else
-            {
-                throw new NoOperationInProgressException( "No operation in progress "
-                    + (receipt == null ? " currently" : "with receipt " + receipt) + "." );
-            }
+            return;
         }
-        if( notify )
+
+        AsyncDispatcher<StatusInfoInfo> dispatcher = this._dispatcher;
+        if( dispatcher == null )
         {
-            this.notifyListeners( info, ChangeType.CHANGED, amountOfSteps );
+            this.deliverToListeners( infos, amount, type, stepsAdded );
+        }
+        else
+        {
+            for( int idx = 0; idx < amount; ++idx )
+            {
+                dispatcher.publish( infos[idx].getDispatchKey(), infos[idx], type, stepsAdded[idx] );
+            }
         }
     }
 
-    protected OperationCreationResult doStartOperation( String parentReceipt, Thread thread, String name, int maxSteps )
+    protected void deliverToListeners( StatusInfoInfo[] infos, int amount, ChangeType type, int[] stepsAdded )
     {
-        StatusInfoInfo info = null;
-        synchronized( this._statusesLock )
+        // Group the events by registration first, keeping the order in which the listeners would be notified
+        Map<ListenerRegistrationImpl, ListenerBatch> batches =
+            new LinkedHashMap<ListenerRegistrationImpl, ListenerBatch>();
+        for( int idx = 0; idx < amount; ++idx )
         {
-            StatusInfoInfo parent = null;
-            if( parentReceipt == null )
-            {
-                parent = this.currentChildlessStatusInThisThread();
-            }
-            else
+            StatusInfoInfo info = infos[idx];
+            StatusInfo statusInfo = info.getStatusInfo();
+            addToBatches( batches, this._listeners.getRegistrations( statusInfo.getThread(), type ), statusInfo, type,
+                stepsAdded[idx] );
+            addToBatches( batches, this._listeners.getUnboundRegistrations( type ), statusInfo, type, stepsAdded[idx] );
+            if( this._amountOfSubtreeListeners.get() > 0 )
             {
-                parent = this._statuses.get( parentReceipt );
+                addToBatches( batches, info.getInheritedSubtreeListeners(), statusInfo, type,
+                    stepsAdded[idx] );
             }
-            info = new StatusInfoInfo( parent, new StatusInfoImpl( parent == null ? null : parent.getStatusInfo(),
-                this.newID(), name, thread, maxSteps ), UUID.randomUUID().toString() );
-            if( parent != null )
+
+            // Dedicated listeners of this operation must not receive the events of the operations after it
+            if( ChangeType.ENDED.equals( type ) )
             {
-                parent.getChildren().add( info );
+                this.removeListenersOfEnded( info );
             }
-
-            this._statuses.put( info.getReceipt(), info );
         }
 
-        this.notifyListeners( info, ChangeType.BEGAN, 0 );
-        return new OperationCreationResultImpl( info.getStatusInfo().getID(), info.getReceipt() );
+        for( Map.Entry<ListenerRegistrationImpl, ListenerBatch> entry : batches.entrySet() )
+        {
+            entry.getValue().deliver( entry.getKey().getListener(), type );
+        }
     }
 
-    protected boolean doEndOperation( String receipt )
+    private static void addToBatches( Map<ListenerRegistrationImpl, ListenerBatch> batches,
+        ListenerRegistrationImpl[] registrations, StatusInfo statusInfo, ChangeType type, int stepsAdded )
     {
-        List<StatusInfoInfo> endedOperations = new LinkedList<StatusInfoInfo>();
-        Set<String> endedOperationReceipts = new HashSet<String>();
-        boolean result = false;
-        synchronized( this._statusesLock )
+        // Arrays of the registry end at their first null element
+        for( int idx = 0; idx < registrations.length && registrations[idx] != null; ++idx )
         {
-            result = this._statuses.containsKey( receipt );
-            if( result )
+            ListenerRegistrationImpl registration = registrations[idx];
+            if( registration.isActive() && registration.acceptsChangeType( type )
+                && registration.acceptsThread( statusInfo.getThread() )
+                && registration.acceptsName( statusInfo.getName() )
+                && registration.getListener().isInterestedInStatusInfo( statusInfo ) )
             {
-                StatusInfoInfo info = this.currentChildlessStatusInSameThread( receipt );
-                boolean matched = false;
-                while( info != null && !matched )
+                ListenerBatch batch = batches.get( registration );
+                if( batch == null )
                 {
-                    if( info.getChildren().size() <= 1 )
-                    {
-                        this._statuses.remove( info.getReceipt() );
-                        endedOperations.add( info );
-                        endedOperationReceipts.add( info.getReceipt() );
-                        if( info.getParent() != null )
-                        {
-                            info.getParent().getChildren().remove( info );
-                        }
-                    }
-                    matched = info.getReceipt().equals( receipt );
-                    info = info.getParent();
+                    batch = new ListenerBatch();
+                    batches.put( registration, batch );
                 }
+                batch.add( statusInfo, stepsAdded );
             }
-            //            else
-            //            {
-            // TODO maybe just ignore instead of throwing?
-            //throw new NoOperationInProgressException( "Could not find operation with receipt " + receipt
-            //    + " to end." );
-            //            }
         }
+    }
 
-        // Notify listeners
-        this.notifyListeners( endedOperations, ChangeType.ENDED, 0 );
-
-        // Remove dedicated listeners
-        synchronized( this._listenersLock )
+    private void removeSubtreeListener( ListenerRegistrationImpl registration )
+    {
+        // Nothing to do if the operation has ended, its subtree listeners have been removed already
+        StatusInfoInfo info = this._statuses.get( registration.getSubtreeReceipt() );
+        if( info != null && info.removeSubtreeListener( registration ) )
         {
-            int idx = 0;
-            while( idx < this._listeners.size() )
-            {
-                String currentReceipt = this._listeners.get( idx ).getAssociatedStatusReceipt();
-                if( currentReceipt != null && endedOperationReceipts.contains( currentReceipt ) )
-                {
-                    this._listeners.remove( idx );
-                    endedOperationReceipts.remove( currentReceipt );
-                }
-                else
-                {
-                    ++idx;
-                }
-            }
+            info.subtreeListenersChanged();
+            this._amountOfSubtreeListeners.decrementAndGet();
         }
-
-        return result;
     }
 
-    protected OperationSnapshot doGetSnapshot()
+    private void removeListenersOfEnded( StatusInfoInfo info )
     {
-        synchronized( this._statusesLock )
+        // Remove dedicated listeners
+        for( ListenerRegistrationImpl registration : info.takeDedicatedListeners() )
         {
-            Set<String> receipts = new HashSet<String>( this._statuses.keySet() );
-            Map<String, Integer> dedicatedListenerAmounts = new HashMap<String, Integer>();
-            int amountOfListeners = 0;
-            synchronized( this._listenersLock )
-            {
-                amountOfListeners = this._listeners.size();
-                for( StatusListenerInfo info : this._listeners )
-                {
-                    String receipt = info.getAssociatedStatusReceipt();
-                    if( receipt != null )
-                    {
-                        Integer current = dedicatedListenerAmounts.get( receipt );
-                        if( current == null )
-                        {
-                            current = 0;
-                        }
-                        ++current;
-                        dedicatedListenerAmounts.put( receipt, current );
-                    }
-                }
-            }
-
-            List<ThreadSnapshot> threadSnapshots = new ArrayList<ThreadSnapshot>();
-            while( !receipts.isEmpty() )
+            registration.unregister();
+        }
+        ListenerRegistrationImpl[] subtreeListeners = info.takeSubtreeListeners();
+        if( subtreeListeners.length > 0 )
+        {
+            info.subtreeListenersChanged();
+            this._amountOfSubtreeListeners.addAndGet( -subtreeListeners.length );
+            for( ListenerRegistrationImpl registration : subtreeListeners )
             {
-                List<StatusInfoSnapshot> infoSnapshots = new ArrayList<StatusInfoSnapshot>();
-                StatusInfoInfo info = this.currentChildlessStatusInSameThread( receipts.iterator().next() );
-                Thread startThread = info.getStatusInfo().getThread();
-                while( info != null && info.getStatusInfo().getThread().equals( startThread ) )
-                {
-                    String receipt = info.getReceipt();
-                    infoSnapshots.add( new StatusInfoSnapshotImpl( info.getStatusInfo(), dedicatedListenerAmounts
-                        .containsKey( receipt ) ? dedicatedListenerAmounts.get( receipt ) : 0 ) );
-                    receipts.remove( receipt );
-                    info = info.getParent();
-                }
-                threadSnapshots.add( new ThreadSnapshotImpl( startThread, infoSnapshots ) );
+                registration.unregister();
             }
-
-            return new OperationSnapshotImpl( threadSnapshots, amountOfListeners );
         }
     }
 
-    protected void notifyListeners( StatusInfoInfo info, ChangeType type, int stepsAdded )
+    private void deliverToListeners( ListenerRegistrationImpl[] registrations, StatusInfo statusInfo, ChangeType type,
+        int stepsAdded )
     {
-        // Notify listeners
-        List<StatusListenerInfo> list = null;
-        synchronized( this._listenersLock )
-        {
-            list = new ArrayList<StatusListenerInfo>( this._listeners );
-        }
-        for( StatusListenerInfo listenerInfo : list )
+        // Arrays of the registry end at their first null element
+        for( int idx = 0; idx < registrations.length && registrations[idx] != null; ++idx )
         {
-            StatusInfoListener listener = listenerInfo.getListener();
-            StatusInfo statusInfo = info.getStatusInfo();
-            if( listener.isInterestedInStatusInfo( statusInfo ) )
+            ListenerRegistrationImpl registration = registrations[idx];
+            StatusInfoListener listener = registration.getListener();
+            if( registration.isActive() && registration.acceptsChangeType( type )
+                && registration.acceptsThread( statusInfo.getThread() )
+                && registration.acceptsName( statusInfo.getName() ) && listener.isInterestedInStatusInfo( statusInfo ) )
             {
                 listener.operationChanged( statusInfo, type, stepsAdded );
             }
         }
     }
 
-    protected void notifyListeners( Iterable<StatusInfoInfo> infos, ChangeType type, int stepsAdded )
+    private static void validateShareOfParent( double shareOfParent )
     {
-        // Notify listeners
-        List<StatusListenerInfo> list = null;
-        synchronized( this._listenersLock )
-        {
-            list = new ArrayList<StatusListenerInfo>( this._listeners );
-        }
-        for( StatusInfoInfo info : infos )
+        if( !(shareOfParent > 0.0 && shareOfParent <= 1.0) )
         {
-            for( StatusListenerInfo listenerInfo : list )
-            {
-                StatusInfoListener listener = listenerInfo.getListener();
-                StatusInfo statusInfo = info.getStatusInfo();
-                if( listener.isInterestedInStatusInfo( statusInfo ) )
-                {
-                    listener.operationChanged( statusInfo, type, stepsAdded );
-                }
-            }
+            throw new IllegalArgumentException( "Share of parent must be greater than 0 and at most 1." );
         }
     }
 
     protected String newID()
     {
-        return UUID.randomUUID().toString();
+        return this._idGenerator.newID();
+    }
+
+    protected String newReceipt()
+    {
+        return this._settings.isSecureReceipts() ? UUID.randomUUID().toString() : this._idGenerator.newReceipt();
+    }
+
+    protected StatusInfoInfo currentStatusInThisThread()
+    {
+        return this.currentStatusInThread( Thread.currentThread() );
     }
 
-    protected StatusInfoInfo currentChildlessStatusInThisThread()
+    protected StatusInfoInfo currentStatusInThread( Thread thread )
     {
-        return this.currentChildlessStatusInSameThread( Thread.currentThread() );
+        ThreadStack stack = this._threadStacks.get( thread );
+        return stack == null ? null : stack.getCurrent();
     }
 
-    protected StatusInfoInfo currentChildlessStatusInSameThread( String receipt )
+    protected ThreadStack getOrCreateStack( Thread thread )
     {
-        StatusInfoInfo result = this._statuses.get( receipt );
-        if( result != null )
+        ThreadStack result = this._threadStacks.get( thread );
+        if( result == null )
         {
-            result = this.currentChildlessStatusInSameThread( result.getStatusInfo().getThread() );
+            ThreadStack created = new ThreadStack( thread );
+            result = this._threadStacks.putIfAbsent( thread, created );
+            if( result == null )
+            {
+                result = created;
+            }
         }
-
         return result;
     }
 
-    protected StatusInfoInfo currentChildlessStatusInSameThread( final Thread thread )
+    protected OperationStatistics getOrCreateStatistics( String name )
     {
-        return Iterables.first( Iterables.filter( new Specification<StatusInfoInfo>()
+        OperationStatistics result = this._metrics.get( name );
+        if( result == null )
         {
-            @Override
-            public boolean satisfiedBy( StatusInfoInfo item )
+            OperationStatistics created = new OperationStatistics( name );
+            result = this._metrics.putIfAbsent( name, created );
+            if( result == null )
             {
-                return item.getChildren().isEmpty() && thread.equals( item.getStatusInfo().getThread() );
+                result = created;
             }
-        }, this._statuses.values() ) );
+        }
+        return result;
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Counter which scales with concurrent updates, in the style of LongAdder. Updates go to a single base value until
+ * they start to contend; after that, each thread updates one of several cells. The cells are spread in memory, so that
+ * two cells never share a cache line. Reading the value sums the base and all cells, so it is not an atomic snapshot
+ * while updates are in progress.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class StripedCounter
+{
+    // Amount of longs between two cells, 128 bytes covers the cache line size and adjacent-line prefetching
+    private static final int CELL_DISTANCE = 16;
+
+    private static final int MAX_CELLS;
+    static
+    {
+        int cells = Integer.highestOneBit( Runtime.getRuntime().availableProcessors() * 2 - 1 ) << 1;
+        MAX_CELLS = Math.max( 2, Math.min( cells, 64 ) );
+    }
+
+    // Per-thread hash used to select the cell, changed on contention
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+            return new int[]
+            {
+                hash == 0 ? 1 : hash
+            };
+        }
+    };
+
+    private static final AtomicReferenceFieldUpdater<StripedCounter, AtomicLongArray> CELLS_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater( StripedCounter.class, AtomicLongArray.class, "_cells" );
+
+    private final AtomicLong _base;
+
+    // Created on first contention
+    private volatile AtomicLongArray _cells;
+
+    StripedCounter()
+    {
+        this( 0L );
+    }
+
+    StripedCounter( long initialValue )
+    {
+        this._base = new AtomicLong( initialValue );
+        this._cells = null;
+    }
+
+    void add( long amount )
+    {
+        AtomicLongArray cells = this._cells;
+        if( cells == null )
+        {
+            long base = this._base.get();
+            if( this._base.compareAndSet( base, base + amount ) )
+            {
+                return;
+            }
+            cells = this.inflate();
+        }
+
+        int[] probe = getProbe();
+        int hash = probe[0];
+        int mask = MAX_CELLS - 1;
+        while( true )
+        {
+            int idx = (hash & mask) * CELL_DISTANCE;
+            long value = cells.get( idx );
+            if( cells.compareAndSet( idx, value, value + amount ) )
+            {
+                break;
+            }
+
+            hash = advanceProbe( probe );
+        }
+    }
+
+    long sum()
+    {
+        long result = this._base.get();
+        AtomicLongArray cells = this._cells;
+        if( cells != null )
+        {
+            for( int idx = 0; idx < MAX_CELLS; ++idx )
+            {
+                result += cells.get( idx * CELL_DISTANCE );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the probe of the current thread, used to select the cell or stripe to update. Shared by all striped
+     * structures.
+     *
+     * @return The probe of the current thread.
+     */
+    static int[] getProbe()
+    {
+        return PROBE.get();
+    }
+
+    /**
+     * Moves the current thread to another cell or stripe after contention.
+     *
+     * @param probe The probe of the current thread.
+     * @return The new hash of the probe.
+     */
+    static int advanceProbe( int[] probe )
+    {
+        // Xorshift
+        int hash = probe[0];
+        hash ^= hash << 13;
+        hash ^= hash >>> 17;
+        hash ^= hash << 5;
+        probe[0] = hash;
+        return hash;
+    }
+
+    private AtomicLongArray inflate()
+    {
+        AtomicLongArray result = this._cells;
+        if( result == null )
+        {
+            AtomicLongArray created = new AtomicLongArray( MAX_CELLS * CELL_DISTANCE );
+            result = CELLS_UPDATER.compareAndSet( this, null, created ) ? created : this._cells;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statusinfo.implementation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Histogram of non-negative values with fixed memory, in the style of HdrHistogram. Values below
+ * {@code 2^SUB_BUCKET_BITS} each have their own bucket. Above that, every power of two is split into
+ * {@code 2^(SUB_BUCKET_BITS - 1)} buckets of equal width, so that the bucket of a value is never wider than about
+ * {@code 1 / 2^(SUB_BUCKET_BITS - 1)} of the value. Like {@link StripedCounter}, recording goes to a single array of
+ * buckets until it starts to contend; after that, each thread records to one of several arrays.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class StripedHistogram
+{
+    // 5 bits keeps values within about 6 percent, with 960 buckets
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+
+    static final int AMOUNT_OF_BUCKETS = HALF_SUB_BUCKETS * (65 - SUB_BUCKET_BITS);
+
+    private static final int MAX_STRIPES;
+    static
+    {
+        int stripes = Integer.highestOneBit( Runtime.getRuntime().availableProcessors() * 2 - 1 );
+        MAX_STRIPES = Math.max( 2, Math.min( stripes, 8 ) );
+    }
+
+    private static final AtomicReferenceFieldUpdater<StripedHistogram, AtomicLongArray[]> STRIPES_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater( StripedHistogram.class, AtomicLongArray[].class, "_stripes" );
+
+    private final AtomicLongArray _base;
+    private final StripedCounter _count;
+    private final StripedCounter _sum;
+    private final AtomicLong _max;
+
+    // Created on first contention
+    private volatile AtomicLongArray[] _stripes;
+
+    StripedHistogram()
+    {
+        this._base = new AtomicLongArray( AMOUNT_OF_BUCKETS );
+        this._count = new StripedCounter();
+        this._sum = new StripedCounter();
+        this._max = new AtomicLong();
+        this._stripes = null;
+    }
+
+    void record( long value )
+    {
+        if( value < 0L )
+        {
+            value = 0L;
+        }
+        int idx = bucketOf( value );
+        AtomicLongArray[] stripes = this._stripes;
+        boolean recorded = false;
+        if( stripes == null )
+        {
+            long count = this._base.get( idx );
+            recorded = this._base.compareAndSet( idx, count, count + 1 );
+            if( !recorded )
+            {
+                stripes = this.inflate();
+            }
+        }
+
+        if( !recorded )
+        {
+            int[] probe = StripedCounter.getProbe();
+            int hash = probe[0];
+            while( !recorded )
+            {
+                AtomicLongArray stripe = stripes[hash & (MAX_STRIPES - 1)];
+                long count = stripe.get( idx );
+                recorded = stripe.compareAndSet( idx, count, count + 1 );
+                if( !recorded )
+                {
+                    hash = StripedCounter.advanceProbe( probe );
+                }
+            }
+        }
+
+        this._count.add( 1L );
+        this._sum.add( value );
+        // Maximum is rarely exceeded once warmed up, so threads mostly just read it
+        long max = this._max.get();
+        while( value > max && !this._max.compareAndSet( max, value ) )
+        {
+            max = this._max.get();
+        }
+    }
+
+    long getCount()
+    {
+        return this._count.sum();
+    }
+
+    long getSum()
+    {
+        return this._sum.sum();
+    }
+
+    /**
+     * Creates a snapshot of this histogram. Values recorded while the snapshot is created may or may not be included.
+     *
+     * @return The snapshot of this histogram.
+     */
+    LatencyDistributionImpl snapshot()
+    {
+        long[] counts = new long[AMOUNT_OF_BUCKETS];
+        long count = 0L;
+        AtomicLongArray[] stripes = this._stripes;
+        for( int idx = 0; idx < AMOUNT_OF_BUCKETS; ++idx )
+        {
+            long bucket = this._base.get( idx );
+            if( stripes != null )
+            {
+                for( AtomicLongArray stripe : stripes )
+                {
+                    bucket += stripe.get( idx );
+                }
+            }
+            counts[idx] = bucket;
+            count += bucket;
+        }
+        return new LatencyDistributionImpl( counts, count, this._sum.sum(), this._max.get() );
+    }
+
+    static int bucketOf( long value )
+    {
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        int shift = Math.max( 0, exponent - (SUB_BUCKET_BITS - 1) );
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the highest value which goes to given bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The highest value which goes to given bucket.
+     */
+    static long highestValueOf( int bucket )
+    {
+        int shift = Math.max( 0, (bucket >>> (SUB_BUCKET_BITS - 1)) - 1 );
+        long subBucket = bucket - (shift << (SUB_BUCKET_BITS - 1));
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private AtomicLongArray[] inflate()
+    {
+        AtomicLongArray[] result = this._stripes;
+        if( result == null )
+        {
+            AtomicLongArray[] created = new AtomicLongArray[MAX_STRIPES];
+            for( int idx = 0; idx < created.length; ++idx )
+            {
+                created[idx] = new AtomicLongArray( AMOUNT_OF_BUCKETS );
+            }
+            result = STRIPES_UPDATER.compareAndSet( this, null, created ) ? created : this._stripes;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.statusinfo.api.bootstrap.OperationIDGenerator;
+
+/**
+ * The default {@link OperationIDGenerator}. Values consist of a random prefix, unique to each generator, and a
+ * counter. Each thread reserves a block of counter values at a time, so threads touch the shared counter only once
+ * per block.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class StripedIDGenerator
+    implements OperationIDGenerator
+{
+    private static final int BLOCK_SIZE = 1024;
+    private static final char ID_SEPARATOR = '-';
+    private static final char RECEIPT_SEPARATOR = ':';
+    private static final char[] DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int MAX_DIGITS = 13; // Long.MAX_VALUE in base 36
+
+    private static final class Block
+    {
+        private long _next;
+        private long _limit;
+        // Values are formatted here, so that only the resulting string is allocated
+        private char[] _buffer;
+    }
+
+    private final char[] _prefix;
+    private final AtomicLong _blocks;
+    private final ThreadLocal<Block> _idBlocks;
+    private final ThreadLocal<Block> _receiptBlocks;
+
+    StripedIDGenerator()
+    {
+        this._prefix = Integer.toHexString( new Random().nextInt() | Integer.MIN_VALUE ).toCharArray();
+        this._blocks = new AtomicLong();
+        this._idBlocks = new ThreadLocal<Block>()
+        {
+            @Override
+            protected Block initialValue()
+            {
+                return new Block();
+            }
+        };
+        this._receiptBlocks = new ThreadLocal<Block>()
+        {
+            @Override
+            protected Block initialValue()
+            {
+                return new Block();
+            }
+        };
+    }
+
+    @Override
+    public String newID()
+    {
+        Block block = this._idBlocks.get();
+        return this.format( block, ID_SEPARATOR, this.next( block ) );
+    }
+
+    @Override
+    public String newReceipt()
+    {
+        Block block = this._receiptBlocks.get();
+        return this.format( block, RECEIPT_SEPARATOR, this.next( block ) );
+    }
+
+    private long next( Block block )
+    {
+        if( block._next == block._limit )
+        {
+            block._next = this._blocks.getAndIncrement() * BLOCK_SIZE;
+            block._limit = block._next + BLOCK_SIZE;
+        }
+        return block._next++;
+    }
+
+    private String format( Block block, char separator, long value )
+    {
+        char[] chars = block._buffer;
+        if( chars == null )
+        {
+            chars = new char[this._prefix.length + 1 + MAX_DIGITS];
+            System.arraycopy( this._prefix, 0, chars, 0, this._prefix.length );
+            block._buffer = chars;
+        }
+        chars[this._prefix.length] = separator;
+
+        // Write digits to the end of the array, then build string from the used part
+        int idx = chars.length;
+        do
+        {
+            chars[--idx] = DIGITS[(int) (value % DIGITS.length)];
+            value /= DIGITS.length;
+        }
+        while( value > 0 );
+        int digits = chars.length - idx;
+        System.arraycopy( chars, idx, chars, this._prefix.length + 1, digits );
+        return new String( chars, 0, this._prefix.length + 1 + digits );
+    }
+}
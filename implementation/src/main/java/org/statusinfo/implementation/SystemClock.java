@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation;
+
+import org.statusinfo.api.bootstrap.Clock;
+
+/**
+ * The default {@link Clock}, reading {@link System#nanoTime()} on every call.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+final class SystemClock
+    implements Clock
+{
+    static final SystemClock INSTANCE = new SystemClock();
+
+    private SystemClock()
+    {
+    }
+
+    @Override
+    public long nanoTime()
+    {
+        return System.nanoTime();
+    }
+}
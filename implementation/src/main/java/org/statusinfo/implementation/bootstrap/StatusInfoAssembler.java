@@ -14,9 +14,11 @@
 package org.statusinfo.implementation.bootstrap;
 
 import org.qi4j.api.common.Visibility;
+import org.qi4j.api.util.NullArgumentException;
 import org.qi4j.bootstrap.Assembler;
 import org.qi4j.bootstrap.AssemblyException;
 import org.qi4j.bootstrap.ModuleAssembly;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
 import org.statusinfo.implementation.StatusInfoServiceImpl.StatusInfoServiceComposite;
 
 /**
@@ -28,17 +30,26 @@ public class StatusInfoAssembler
 {
 
     private final Visibility _visibility;
+    private final StatusInfoSettings _settings;
 
     public StatusInfoAssembler( Visibility visibility )
     {
+        this( visibility, new StatusInfoSettings() );
+    }
+
+    public StatusInfoAssembler( Visibility visibility, StatusInfoSettings settings )
+    {
+        NullArgumentException.validateNotNull( "Settings", settings );
+
         this._visibility = visibility;
+        this._settings = settings;
     }
 
     @Override
     public void assemble( ModuleAssembly module )
         throws AssemblyException
     {
-        module.services( StatusInfoServiceComposite.class ).visibleIn( this._visibility );
+        module.services( StatusInfoServiceComposite.class ).setMetaInfo( this._settings ).visibleIn( this._visibility );
     }
 
 }
@@ -17,6 +17,7 @@ package org.statusinfo.implementation.bootstrap;
 import org.qi4j.api.common.Visibility;
 import org.qi4j.bootstrap.Assembler;
 import org.statusinfo.api.bootstrap.StatusInfoAssemblerProvider;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
 
 /**
  * 
@@ -32,4 +33,10 @@ public class StatusInfoAssemblerProviderImpl
         return new StatusInfoAssembler( visibility );
     }
 
+    @Override
+    public Assembler getAssembler( Visibility visibility, StatusInfoSettings settings )
+    {
+        return new StatusInfoAssembler( visibility, settings );
+    }
+
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import org.qi4j.api.common.Visibility;
+import org.qi4j.bootstrap.AssemblyException;
+import org.qi4j.bootstrap.ModuleAssembly;
+import org.statusinfo.api.bootstrap.StatusInfoAssemblerProvider;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+
+/**
+ * Base class for tests which need the service assembled with settings of their own.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public abstract class AbstractConfiguredStatusInfoTest extends AbstractStatusInfoTest
+{
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        StatusInfoAssemblerProvider.DEFAULT.getAssembler( Visibility.module, this.createSettings() ).assemble( module );
+    }
+
+    /**
+     * Creates the settings to assemble the service with. Called once for each test, before {@link #setUp()} returns.
+     *
+     * @return The settings to assemble the service with.
+     */
+    protected abstract StatusInfoSettings createSettings();
+}
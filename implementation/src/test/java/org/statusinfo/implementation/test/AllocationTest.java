@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfoService.Operation;
+import org.statusinfo.api.bootstrap.OperationIDGenerator;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+
+/**
+ * Checks that nothing besides the operation records is allocated when no listeners are registered.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class AllocationTest extends AbstractConfiguredStatusInfoTest
+{
+    private static final int WARMUP_ROUNDS = 20000;
+    private static final int ROUNDS = 100000;
+
+    // Measuring itself may allocate a little
+    private static final long MEASUREMENT_SLACK = 4096L;
+
+    // The operation objects, the stack of the thread, and the entry in the receipt map take about 300 bytes with
+    // compressed references; ID and receipt strings are measured separately, since they depend on the generator
+    private static final long MAX_BYTES_PER_OPERATION = 352L;
+
+    private final OperationIDGenerator _ids = new OperationIDGenerator()
+    {
+        private final AtomicLong _counter = new AtomicLong();
+
+        @Override
+        public String newID()
+        {
+            return Long.toString( this._counter.incrementAndGet() );
+        }
+
+        @Override
+        public String newReceipt()
+        {
+            return "receipt-" + this._counter.incrementAndGet();
+        }
+    };
+
+    // Written by the baseline loop, so that the strings it creates are not optimized away
+    private volatile String _sink;
+
+    @Override
+    protected StatusInfoSettings createSettings()
+    {
+        return new StatusInfoSettings().setIDGenerator( this._ids );
+    }
+
+    @Test
+    public void testUpdatingDoesNotAllocate()
+    {
+        OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+        for( int idx = 0; idx < WARMUP_ROUNDS; ++idx )
+        {
+            this.getStatusInfo().updateCurrentOperation( 1 );
+            this.getStatusInfo().updateOperation( creation.getReceipt(), 1 );
+        }
+
+        long before = this.allocatedBytes();
+        for( int idx = 0; idx < ROUNDS; ++idx )
+        {
+            this.getStatusInfo().updateCurrentOperation( 1 );
+            this.getStatusInfo().updateOperation( creation.getReceipt(), 1 );
+        }
+        long allocated = this.allocatedBytes() - before;
+        this.getStatusInfo().endOperation( creation.getReceipt() );
+
+        Assert.assertTrue( "Updating must not allocate, but allocated " + allocated + " bytes.",
+            allocated <= MEASUREMENT_SLACK );
+    }
+
+    @Test
+    public void testStartingAndEndingAllocatesOnlyOperationRecords()
+    {
+        Operation<Object, RuntimeException> operation = new Operation<Object, RuntimeException>()
+        {
+            @Override
+            public Object doOperation()
+            {
+                return null;
+            }
+        };
+        for( int idx = 0; idx < WARMUP_ROUNDS; ++idx )
+        {
+            this.getStatusInfo().endOperation( this.getStatusInfo().startOperation( OPERATION_NAME ).getReceipt() );
+            this.getStatusInfo().performOperation( OPERATION_NAME, operation );
+        }
+
+        // Baseline: the IDs and receipts of all operations
+        long before = this.allocatedBytes();
+        for( int idx = 0; idx < 2 * ROUNDS; ++idx )
+        {
+            this._sink = this._ids.newID();
+            this._sink = this._ids.newReceipt();
+        }
+        long ids = this.allocatedBytes() - before;
+
+        before = this.allocatedBytes();
+        for( int idx = 0; idx < ROUNDS; ++idx )
+        {
+            this.getStatusInfo().endOperation( this.getStatusInfo().startOperation( OPERATION_NAME ).getReceipt() );
+            this.getStatusInfo().performOperation( OPERATION_NAME, operation );
+        }
+        long allocated = this.allocatedBytes() - before - ids;
+
+        Assert.assertTrue( "Operations must only allocate their records, but allocated " + allocated / (2 * ROUNDS)
+            + " bytes per operation.", allocated <= 2 * ROUNDS * MAX_BYTES_PER_OPERATION + MEASUREMENT_SLACK );
+    }
+
+    private long allocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue( bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled() );
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes( Thread.currentThread().getId() );
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationHandle;
+import org.statusinfo.api.OperationSnapshot;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+import org.statusinfo.api.StatusInfoService;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class AsyncOperationTest extends AbstractStatusInfoTest
+{
+    @Test
+    public void testOperationEndsWhenStageCompletes()
+        throws Exception
+    {
+        StatusInfoService service = this.getStatusInfo();
+        final CompletableFuture<String> future = new CompletableFuture<String>();
+        CompletionStage<String> stage = service.performOperationAsync( OPERATION_NAME,
+            new Supplier<CompletionStage<String>>()
+            {
+                @Override
+                public CompletionStage<String> get()
+                {
+                    return future;
+                }
+            } );
+
+        OperationSnapshot snapshot = service.getSnapshotOfCurrentState();
+        Assert.assertFalse( "Asynchronous operation must not be in any thread.", snapshot.getThreadSnapshots()
+            .iterator().hasNext() );
+        Assert.assertEquals( "Asynchronous operation must be listed separately.", 1, snapshot
+            .getAsyncOperationStatuses().size() );
+        StatusInfo info = snapshot.getAsyncOperationStatuses().get( 0 ).getStatusInfo();
+        Assert.assertEquals( "Operation must have its name.", OPERATION_NAME, info.getName() );
+        Assert.assertNull( "Asynchronous operation must not have a thread.", info.getThread() );
+        Assert.assertNull( "Asynchronous operation must not be current operation.", service.getCurrentOperation() );
+
+        future.complete( "done" );
+        Assert.assertEquals( "Stage must complete like the stage of the operation.", "done", stage
+            .toCompletableFuture().get() );
+        Assert.assertTrue( "Operation must end when its stage completes.", service.getSnapshotOfCurrentState()
+            .getAsyncOperationStatuses().isEmpty() );
+    }
+
+    @Test
+    public void testFailedOperationEndsAndNotifiesListeners()
+        throws Exception
+    {
+        StatusInfoService service = this.getStatusInfo();
+        final List<ChangeType> events = new ArrayList<ChangeType>();
+        service.addStatusInfoListener( new StatusInfoListener()
+        {
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return statusInfo.getThread() == null;
+            }
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                events.add( changeType );
+            }
+        } );
+
+        final CompletableFuture<String> future = new CompletableFuture<String>();
+        CompletionStage<String> stage = service.performOperationAsync( OPERATION_NAME, 10,
+            new Function<OperationHandle, CompletionStage<String>>()
+            {
+                @Override
+                public CompletionStage<String> apply( OperationHandle handle )
+                {
+                    handle.update( 1 );
+                    return future;
+                }
+            } );
+        future.completeExceptionally( new IllegalStateException() );
+        try
+        {
+            stage.toCompletableFuture().get();
+            Assert.fail( "Stage must complete exceptionally." );
+        }
+        catch( ExecutionException ee )
+        {
+            Assert.assertTrue( "Failure must be passed on.", ee.getCause() instanceof IllegalStateException );
+        }
+        Assert.assertEquals( "Listener must be notified about the whole operation.", 3, events.size() );
+        Assert.assertEquals( "Operation must have ended.", ChangeType.ENDED, events.get( 2 ) );
+        Assert.assertTrue( "Operation must not be in progress.", service.getSnapshotOfCurrentState()
+            .getAsyncOperationStatuses().isEmpty() );
+    }
+
+    @Test
+    public void testMissingStageEndsOperationAsFailed()
+    {
+        StatusInfoService service = this.getStatusInfo();
+        try
+        {
+            service.performOperationAsync( OPERATION_NAME, new Supplier<CompletionStage<String>>()
+            {
+                @Override
+                public CompletionStage<String> get()
+                {
+                    return null;
+                }
+            } );
+            Assert.fail( "Missing stage must be rejected." );
+        }
+        catch( IllegalStateException ise )
+        {
+            Assert.assertTrue( "Message must name the operation.", ise.getMessage().contains( OPERATION_NAME ) );
+        }
+        Assert.assertTrue( "Operation must not be in progress.", service.getSnapshotOfCurrentState()
+            .getAsyncOperationStatuses().isEmpty() );
+    }
+}
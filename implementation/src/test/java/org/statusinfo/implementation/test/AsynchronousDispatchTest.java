@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+import org.statusinfo.api.bootstrap.StatusInfoSettings.OverflowPolicy;
+import org.statusinfo.api.bootstrap.StatusInfoSettings.WaitPolicy;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class AsynchronousDispatchTest extends AbstractConfiguredStatusInfoTest
+{
+    private static final int THREADS = 4;
+    private static final int OPERATIONS_PER_THREAD = 500;
+    private static final int UPDATES_PER_OPERATION = 10;
+    private static final int BUFFER_SIZE = 64;
+
+    @Override
+    protected StatusInfoSettings createSettings()
+    {
+        return new StatusInfoSettings().setAsynchronousDispatch( 2, BUFFER_SIZE, WaitPolicy.BLOCKING,
+            OverflowPolicy.BLOCK );
+    }
+
+    @Test
+    public void testListenersAreNotifiedInAnotherThread()
+        throws Exception
+    {
+        final CountDownLatch latch = new CountDownLatch( 1 );
+        final Thread reportingThread = Thread.currentThread();
+        final List<Thread> notifyingThreads = new ArrayList<Thread>();
+        this.getStatusInfo().addStatusInfoListener( new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                notifyingThreads.add( Thread.currentThread() );
+                latch.countDown();
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        } );
+        this.getStatusInfo().startOperation( OPERATION_NAME );
+        Assert.assertTrue( "Notification must arrive.", latch.await( 5, TimeUnit.SECONDS ) );
+        Assert.assertFalse( "Listener must not run in the reporting thread.", notifyingThreads
+            .contains( reportingThread ) );
+    }
+
+    @Test
+    public void testEventsOfEachOperationAreDeliveredInOrder()
+        throws Exception
+    {
+        final Map<String, List<String>> events = new ConcurrentHashMap<String, List<String>>();
+        final CountDownLatch ended = new CountDownLatch( THREADS * OPERATIONS_PER_THREAD );
+        this.getStatusInfo().addStatusInfoListener( new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                List<String> list = events.get( statusInfo.getID() );
+                if( list == null )
+                {
+                    list = new ArrayList<String>();
+                    events.put( statusInfo.getID(), list );
+                }
+                list.add( changeType.name() );
+                if( ChangeType.ENDED.equals( changeType ) )
+                {
+                    ended.countDown();
+                }
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        } );
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for( int idx = 0; idx < THREADS; ++idx )
+        {
+            threads.add( new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for( int op = 0; op < OPERATIONS_PER_THREAD; ++op )
+                    {
+                        OperationCreationResult creation = getStatusInfo().startOperation( OPERATION_NAME );
+                        for( int update = 0; update < UPDATES_PER_OPERATION; ++update )
+                        {
+                            getStatusInfo().updateCurrentOperation( 1 );
+                        }
+                        getStatusInfo().endOperation( creation.getReceipt() );
+                    }
+                }
+            } ) );
+        }
+        for( Thread thread : threads )
+        {
+            thread.start();
+        }
+        for( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        Assert.assertTrue( "All operations must be ended.", ended.await( 10, TimeUnit.SECONDS ) );
+        Assert.assertEquals( "All operations must be seen.", THREADS * OPERATIONS_PER_THREAD, events.size() );
+        for( List<String> list : events.values() )
+        {
+            Assert.assertEquals( "Every event must be delivered.", UPDATES_PER_OPERATION + 2, list.size() );
+            Assert.assertEquals( "First event must be BEGAN.", "BEGAN", list.get( 0 ) );
+            Assert.assertEquals( "Last event must be ENDED.", "ENDED", list.get( list.size() - 1 ) );
+        }
+    }
+
+    @Test
+    public void testListenersPublishingToFullBufferDropEventsInsteadOfWaiting()
+        throws Exception
+    {
+        final CountDownLatch done = new CountDownLatch( 1 );
+        this.getStatusInfo().addStatusInfoListener( new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                if( "outer".equals( statusInfo.getName() ) && ChangeType.BEGAN.equals( changeType ) )
+                {
+                    // This thread does not handle events until this returns, so its own buffer fills up
+                    for( int idx = 0; idx < 4 * BUFFER_SIZE; ++idx )
+                    {
+                        getStatusInfo().endOperation( getStatusInfo().startOperation( OPERATION_NAME ).getReceipt() );
+                    }
+                    done.countDown();
+                }
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        } );
+        Assert.assertEquals( "No events must be dropped before the buffer is full.", 0L, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getAmountOfDroppedEvents() );
+
+        this.getStatusInfo().endOperation( this.getStatusInfo().startOperation( "outer" ).getReceipt() );
+
+        Assert.assertTrue( "Listener must not wait for its own dispatcher thread.",
+            done.await( 10, TimeUnit.SECONDS ) );
+        Assert.assertTrue( "Events which did not fit into the buffer must be counted as dropped.", this
+            .getStatusInfo().getSnapshotOfCurrentState().getAmountOfDroppedEvents() > 0L );
+    }
+}
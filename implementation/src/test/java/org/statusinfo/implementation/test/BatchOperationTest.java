@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.BatchStatusInfoListener;
+import org.statusinfo.api.NoOperationInProgressException;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+import org.statusinfo.api.StatusInfoService;
+import org.statusinfo.api.StatusInfoSnapshot;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class BatchOperationTest extends AbstractStatusInfoTest
+{
+    private static final int AMOUNT = 3;
+
+    private static class RecordingBatchListener
+        implements BatchStatusInfoListener
+    {
+        private final List<ChangeType> _batches = new ArrayList<ChangeType>();
+        private final List<Integer> _batchSizes = new ArrayList<Integer>();
+        private int _singleEvents = 0;
+
+        @Override
+        public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+        {
+            return !OPERATION_NAME.equals( statusInfo.getName() );
+        }
+
+        @Override
+        public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+        {
+            ++this._singleEvents;
+        }
+
+        @Override
+        public void operationsChanged( List<StatusInfo> statusInfos, ChangeType changeType, int[] stepsAdded )
+        {
+            Assert.assertEquals( "There must be steps of each operation.", statusInfos.size(), stepsAdded.length );
+            this._batches.add( changeType );
+            this._batchSizes.add( statusInfos.size() );
+        }
+    }
+
+    private static class CountingListener
+        implements StatusInfoListener
+    {
+        private int _events = 0;
+
+        @Override
+        public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+        {
+            return true;
+        }
+
+        @Override
+        public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+        {
+            ++this._events;
+        }
+    }
+
+    @Test
+    public void testBulkCallsProduceOneNotificationEach()
+    {
+        StatusInfoService service = this.getStatusInfo();
+        RecordingBatchListener batchListener = new RecordingBatchListener();
+        CountingListener plainListener = new CountingListener();
+        service.addStatusInfoListener( batchListener );
+        service.addStatusInfoListener( plainListener );
+
+        OperationCreationResult parent = service.startOperation( OPERATION_NAME );
+        List<OperationCreationResult> records = service.startSubOperations( parent.getReceipt(), "record", 10,
+            AMOUNT );
+        Assert.assertEquals( "All operations must be started.", AMOUNT, records.size() );
+
+        String[] receipts = new String[AMOUNT];
+        int[] steps = new int[AMOUNT];
+        for( int idx = 0; idx < AMOUNT; ++idx )
+        {
+            receipts[idx] = records.get( idx ).getReceipt();
+            steps[idx] = idx + 1;
+        }
+        service.updateOperations( receipts, steps );
+        Assert.assertEquals( "All given operations must be ended.", AMOUNT,
+            service.endOperations( Arrays.asList( receipts ) ) );
+        Assert.assertTrue( "Parent must still be in progress.", service.endOperation( parent.getReceipt() ) );
+
+        Assert.assertEquals( "Batch listener must get one notification per bulk call.",
+            Arrays.asList( ChangeType.BEGAN, ChangeType.CHANGED, ChangeType.ENDED ), batchListener._batches );
+        Assert.assertEquals( "Batches must contain all operations.", Arrays.asList( AMOUNT, AMOUNT, AMOUNT ),
+            batchListener._batchSizes );
+        Assert.assertEquals( "Batch listener must not be notified about other operations.", 0,
+            batchListener._singleEvents );
+        Assert.assertEquals( "Plain listener must be notified about each operation.", 3 * AMOUNT + 2,
+            plainListener._events );
+    }
+
+    @Test
+    public void testRecordsEndOneAtATime()
+    {
+        StatusInfoService service = this.getStatusInfo();
+        OperationCreationResult parent = service.startOperation( OPERATION_NAME, 10 );
+        List<OperationCreationResult> records = service.startSubOperations( parent.getReceipt(), "record", 10,
+            AMOUNT );
+        Assert.assertEquals( "Records must not become the current operation.", parent, service.getCurrentOperation() );
+
+        for( int idx = 0; idx < AMOUNT; ++idx )
+        {
+            Assert.assertTrue( "Record must be in progress until it is ended.",
+                service.endOperation( records.get( idx ).getReceipt() ) );
+            List<StatusInfoSnapshot> remaining = service.getSnapshotOfCurrentState().getAsyncOperationStatuses();
+            Assert.assertEquals( "Other records must stay in progress.", AMOUNT - idx - 1, remaining.size() );
+            for( StatusInfoSnapshot record : remaining )
+            {
+                Assert.assertEquals( "Record must be a sub-operation of the parent.", parent.getID(), record
+                    .getStatusInfo().getParent().getID() );
+            }
+        }
+
+        service.updateCurrentOperation( 1 );
+        Assert.assertEquals( "Updating current operation must reach the parent.", 1, service
+            .getSnapshotOfCurrentState().getThreadSnapshots().iterator().next().getOperationStatuses().get( 0 )
+            .getStatusInfo().getCurrentSteps() );
+        service.endOperation( parent.getReceipt() );
+    }
+
+    @Test
+    public void testBulkUpdateOfMissingOperationUpdatesNothing()
+    {
+        StatusInfoService service = this.getStatusInfo();
+        List<OperationCreationResult> records = service.startSubOperations( null, OPERATION_NAME, 10, 1 );
+        CountingListener listener = new CountingListener();
+        service.addStatusInfoListener( listener );
+        try
+        {
+            service.updateOperations( new String[]
+            {
+                records.get( 0 ).getReceipt(), "missing"
+            }, new int[]
+            {
+                1, 1
+            } );
+            Assert.fail( "Updating an operation which is not in progress must fail." );
+        }
+        catch( NoOperationInProgressException nopie )
+        {
+            // Expected
+        }
+        Assert.assertEquals( "No listener must be notified.", 0, listener._events );
+        Assert.assertEquals( "No steps must be added.", 0, service.getSnapshotOfCurrentState()
+            .getAsyncOperationStatuses().get( 0 ).getStatusInfo().getCurrentSteps() );
+        service.endOperations( Arrays.asList( records.get( 0 ).getReceipt() ) );
+    }
+}
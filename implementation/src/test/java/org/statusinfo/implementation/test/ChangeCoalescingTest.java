@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class ChangeCoalescingTest extends AbstractConfiguredStatusInfoTest
+{
+    private static final int STEP_THRESHOLD = 100;
+    private static final long INTERVAL = TimeUnit.HOURS.toNanos( 1L );
+
+    private final ManualClock _clock = new ManualClock();
+    private final List<String> _events = new ArrayList<String>();
+
+    @Override
+    protected StatusInfoSettings createSettings()
+    {
+        // Interval only elapses when tests advance the clock
+        return new StatusInfoSettings().setClock( this._clock ).setChangeCoalescing( INTERVAL, TimeUnit.NANOSECONDS,
+            STEP_THRESHOLD );
+    }
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        this.getStatusInfo().addStatusInfoListener( new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                _events.add( changeType + ":" + stepsAdded );
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        } );
+    }
+
+    @Test
+    public void testChangesAreMergedUntilThresholdIsReached()
+    {
+        OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+        for( int idx = 0; idx < 10 * STEP_THRESHOLD; ++idx )
+        {
+            this.getStatusInfo().updateCurrentOperation( 1 );
+        }
+        this.getStatusInfo().endOperation( creation.getReceipt() );
+
+        List<String> expected = new ArrayList<String>();
+        expected.add( "BEGAN:0" );
+        for( int idx = 0; idx < 10; ++idx )
+        {
+            expected.add( "CHANGED:" + STEP_THRESHOLD );
+        }
+        expected.add( "ENDED:0" );
+        Assert.assertEquals( "Changes must be merged into threshold-sized events.", expected, this._events );
+    }
+
+    @Test
+    public void testRemainingStepsAreDeliveredBeforeEnd()
+    {
+        OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+        for( int idx = 0; idx < STEP_THRESHOLD - 1; ++idx )
+        {
+            this.getStatusInfo().updateCurrentOperation( 1 );
+        }
+        Assert.assertEquals( "Current steps must be up to date even without events.", STEP_THRESHOLD - 1, this
+            .getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots().iterator().next()
+            .getOperationStatuses().get( 0 ).getStatusInfo().getCurrentSteps() );
+        this.getStatusInfo().endOperation( creation.getReceipt() );
+
+        List<String> expected = new ArrayList<String>();
+        expected.add( "BEGAN:0" );
+        expected.add( "CHANGED:" + (STEP_THRESHOLD - 1) );
+        expected.add( "ENDED:0" );
+        Assert.assertEquals( "Remaining steps must be delivered just before ending.", expected, this._events );
+    }
+
+    @Test
+    public void testChangesAreMergedUntilIntervalElapses()
+    {
+        OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        this._clock.advance( INTERVAL - 1L );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        this._clock.advance( 1L );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        this._clock.advance( INTERVAL );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        this.getStatusInfo().endOperation( creation.getReceipt() );
+
+        List<String> expected = new ArrayList<String>();
+        expected.add( "BEGAN:0" );
+        expected.add( "CHANGED:3" );
+        expected.add( "CHANGED:2" );
+        expected.add( "CHANGED:1" );
+        expected.add( "ENDED:0" );
+        Assert.assertEquals( "Changes must be merged until the interval has elapsed.", expected, this._events );
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfoSnapshot;
+import org.statusinfo.api.ThreadSnapshot;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class ConcurrentOperationsTest extends AbstractStatusInfoTest
+{
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 2000;
+
+    @Test
+    public void testNestedOperationsInManyThreadsAreIsolated()
+        throws Exception
+    {
+        this.runInThreads( new Callable<Void>()
+        {
+            @Override
+            public Void call()
+                throws Exception
+            {
+                for( int idx = 0; idx < ITERATIONS; ++idx )
+                {
+                    OperationCreationResult outer = getStatusInfo().startOperation( OPERATION_NAME );
+                    OperationCreationResult inner = getStatusInfo().startOperation( OPERATION_NAME, 10 );
+                    getStatusInfo().updateCurrentOperation( 1 );
+                    ThreadSnapshot own = findOwnSnapshot();
+                    Assert.assertEquals( "Thread must see exactly its own operations.", 2, own.getOperationStatuses()
+                        .size() );
+                    StatusInfoSnapshot innermost = own.getOperationStatuses().get( 0 );
+                    Assert.assertEquals( "Innermost operation must be first.", inner.getID(), innermost
+                        .getStatusInfo().getID() );
+                    Assert.assertEquals( "Parent must be the outer operation.", outer.getID(), innermost
+                        .getStatusInfo().getParent().getID() );
+                    Assert.assertTrue( getStatusInfo().endOperation( outer.getReceipt() ) );
+                    Assert.assertFalse( "Inner operation must have been ended with outer.", getStatusInfo()
+                        .endOperation( inner.getReceipt() ) );
+                }
+                return null;
+            }
+        } );
+        Assert.assertFalse( "No operations must be left.", this.getStatusInfo().getSnapshotOfCurrentState()
+            .getThreadSnapshots().iterator().hasNext() );
+    }
+
+    @Test
+    public void testSubOperationsOfSharedParentFromManyThreads()
+        throws Exception
+    {
+        final OperationCreationResult parent = this.getStatusInfo().startOperation( OPERATION_NAME );
+        this.runInThreads( new Callable<Void>()
+        {
+            @Override
+            public Void call()
+                throws Exception
+            {
+                for( int idx = 0; idx < ITERATIONS; ++idx )
+                {
+                    OperationCreationResult child = getStatusInfo().startSubOperation( parent.getReceipt(),
+                        OPERATION_NAME );
+                    getStatusInfo().updateOperation( parent.getReceipt(), 1 );
+                    Assert.assertTrue( getStatusInfo().endOperation( child.getReceipt() ) );
+                }
+                return null;
+            }
+        } );
+        List<StatusInfoSnapshot> statuses = this.findOwnSnapshot().getOperationStatuses();
+        Assert.assertEquals( "Only parent operation must be left.", 1, statuses.size() );
+        Assert.assertEquals( "All updates must be counted.", THREADS * ITERATIONS, statuses.get( 0 ).getStatusInfo()
+            .getCurrentSteps() );
+        Assert.assertTrue( this.getStatusInfo().endOperation( parent.getReceipt() ) );
+    }
+
+    protected ThreadSnapshot findOwnSnapshot()
+    {
+        for( ThreadSnapshot snapshot : this.getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots() )
+        {
+            if( snapshot.getThread().equals( Thread.currentThread() ) )
+            {
+                return snapshot;
+            }
+        }
+        throw new AssertionError( "No snapshot for current thread." );
+    }
+
+    protected void runInThreads( final Callable<Void> task )
+        throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch( 1 );
+        ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for( int idx = 0; idx < THREADS; ++idx )
+            {
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws Exception
+                    {
+                        start.await();
+                        return task.call();
+                    }
+                } ) );
+            }
+            start.countDown();
+            for( Future<Void> future : futures )
+            {
+                future.get( 60, TimeUnit.SECONDS );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfoSnapshot;
+import org.statusinfo.api.ThreadSnapshot;
+
+/**
+ * Verifies that the current operation of a thread is found and updated regardless of the operations of other threads.
+ * How the cost of updating behaves as the amount of threads grows is measured by the update benchmark of the
+ * benchmarks module.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class CurrentOperationScalingTest extends AbstractStatusInfoTest
+{
+    private static final int OTHER_THREADS = 1000;
+    private static final int NESTED_OPERATIONS_PER_THREAD = 3;
+    private static final int UPDATES = 10;
+
+    @Test
+    public void testCurrentOperationDoesNotDependOnOtherThreads()
+    {
+        OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+        List<OperationCreationResult> others = this.startOperationsInOtherThreads();
+        try
+        {
+            Assert.assertEquals( "Current operation must be the one of this thread.", creation, this.getStatusInfo()
+                .getCurrentOperation() );
+            for( int idx = 0; idx < UPDATES; ++idx )
+            {
+                this.getStatusInfo().updateCurrentOperation( 1 );
+            }
+
+            int threads = 0;
+            for( ThreadSnapshot thread : this.getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots() )
+            {
+                ++threads;
+                boolean current = Thread.currentThread().equals( thread.getThread() );
+                for( StatusInfoSnapshot operation : thread.getOperationStatuses() )
+                {
+                    Assert.assertEquals( "Only the current operation of this thread must be updated.", current ? UPDATES
+                        : 0, operation.getStatusInfo().getCurrentSteps() );
+                }
+            }
+            Assert.assertEquals( "Operations of all threads must be in progress.", OTHER_THREADS + 1, threads );
+        }
+        finally
+        {
+            for( OperationCreationResult other : others )
+            {
+                this.getStatusInfo().endOperation( other.getReceipt() );
+            }
+            this.getStatusInfo().endOperation( creation.getReceipt() );
+        }
+    }
+
+    protected List<OperationCreationResult> startOperationsInOtherThreads()
+    {
+        List<OperationCreationResult> result = new ArrayList<OperationCreationResult>( OTHER_THREADS );
+        for( int idx = 0; idx < OTHER_THREADS; ++idx )
+        {
+            Thread thread = new Thread();
+            for( int nested = 0; nested < NESTED_OPERATIONS_PER_THREAD; ++nested )
+            {
+                OperationCreationResult creation = this.getStatusInfo().startOperation( thread, OPERATION_NAME );
+                if( nested == 0 )
+                {
+                    result.add( creation );
+                }
+            }
+        }
+        return result;
+    }
+}
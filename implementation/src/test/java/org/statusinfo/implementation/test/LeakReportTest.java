@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+import org.statusinfo.api.bootstrap.StatusInfoSettings.LeakAction;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class LeakReportTest extends AbstractConfiguredStatusInfoTest
+{
+    // Operations only become too old when tests advance the clock
+    private static final long MAX_AGE = TimeUnit.HOURS.toNanos( 1L );
+    private static final long MAX_WAIT_MILLIS = 10000L;
+    private static final long POLL_MILLIS = 10L;
+
+    private final ManualClock _clock = new ManualClock();
+    private final ByteArrayOutputStream _log = new ByteArrayOutputStream();
+    private PrintStream _originalErr;
+
+    @Override
+    protected StatusInfoSettings createSettings()
+    {
+        return new StatusInfoSettings().setClock( this._clock )
+            .setReaping( 10, TimeUnit.MILLISECONDS, 100, LeakAction.REPORT )
+            .setMaxOperationAge( MAX_AGE, TimeUnit.NANOSECONDS );
+    }
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        // The simple logger of the tests writes to the current standard error stream
+        this._originalErr = System.err;
+        System.setErr( new PrintStream( this._log, true ) );
+    }
+
+    @Override
+    public void tearDown()
+        throws Exception
+    {
+        System.setErr( this._originalErr );
+        super.tearDown();
+    }
+
+    @Test
+    public void testLeakedOperationsAreReportedOnceAndNotEnded()
+        throws Exception
+    {
+        this._clock.set( 0L );
+        OperationCreationResult stale = this.getStatusInfo().startOperation( "stale" );
+        this._clock.advance( MAX_AGE + 1L );
+        this.awaitReport( "operation stale " );
+
+        // Stacks are inspected before asynchronous operations, so the stale operation has been inspected again by the
+        // time the asynchronous one is reported
+        this.getStatusInfo().performOperationAsync( "async", new Supplier<CompletionStage<Object>>()
+        {
+            @Override
+            public CompletionStage<Object> get()
+            {
+                return new CompletableFuture<Object>();
+            }
+        } );
+        this._clock.advance( MAX_AGE + 1L );
+        this.awaitReport( "operation async " );
+
+        Assert.assertEquals( "Leaked operation must be reported once.", 1, this.countReports( "operation stale " ) );
+        Assert.assertEquals( "Leaked operation must not be ended.", stale.getID(), this.getStatusInfo()
+            .getSnapshotOfCurrentState().getThreadSnapshots().iterator().next().getOperationStatuses().get( 0 )
+            .getStatusInfo().getID() );
+        Assert.assertEquals( "Leaked asynchronous operation must not be ended.", 1, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getAsyncOperationStatuses().size() );
+    }
+
+    private void awaitReport( String operation )
+        throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+        while( this.countReports( operation ) == 0 && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( POLL_MILLIS );
+        }
+        Assert.assertEquals( "Leaked " + operation + "must be reported.", 1, this.countReports( operation ) );
+    }
+
+    private int countReports( String operation )
+    {
+        String log = new String( this._log.toByteArray() );
+        int result = 0;
+        for( int idx = log.indexOf( "Leaked " + operation ); idx >= 0; idx = log.indexOf( "Leaked " + operation,
+            idx + 1 ) )
+        {
+            ++result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import org.statusinfo.api.bootstrap.Clock;
+
+/**
+ * Clock which only advances when told to, so that tests depending on time are deterministic.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public final class ManualClock
+    implements Clock
+{
+    private volatile long _now;
+
+    @Override
+    public long nanoTime()
+    {
+        return this._now;
+    }
+
+    public void set( long now )
+    {
+        this._now = now;
+    }
+
+    public void advance( long amount )
+    {
+        this._now += amount;
+    }
+}
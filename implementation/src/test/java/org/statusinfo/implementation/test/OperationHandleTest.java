@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.NoOperationInProgressException;
+import org.statusinfo.api.OperationHandle;
+import org.statusinfo.api.StatusInfoSnapshot;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class OperationHandleTest extends AbstractStatusInfoTest
+{
+
+    @Test
+    public void testHandleUpdatesAndEndsOperation()
+    {
+        OperationHandle handle = this.getStatusInfo().startOperationWithHandle( OPERATION_NAME, 10 );
+        OperationHandle sub = handle.subOperation( OPERATION_NAME );
+        handle.update( 3 );
+        sub.update( 2 );
+
+        List<StatusInfoSnapshot> statuses = this.getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots()
+            .iterator().next().getOperationStatuses();
+        Assert.assertEquals( "Both operations must be in progress.", 2, statuses.size() );
+        Assert.assertEquals( "Sub-operation must be nested in the operation.", handle.getID(), statuses.get( 0 )
+            .getStatusInfo().getParent().getID() );
+        Assert.assertEquals( "Steps must be added to the operation.", 3, statuses.get( 1 ).getStatusInfo()
+            .getCurrentSteps() );
+        Assert.assertEquals( "Steps must be added to the sub-operation.", 2, statuses.get( 0 ).getStatusInfo()
+            .getCurrentSteps() );
+
+        Assert.assertTrue( "Ending must succeed.", handle.end() );
+        Assert.assertFalse( "Operation must not be active after ending.", handle.isActive() );
+        Assert.assertFalse( "Sub-operation must be ended with the operation.", sub.isActive() );
+        Assert.assertFalse( "Ending twice must not succeed.", handle.end() );
+    }
+
+    @Test
+    public void testHandleAndReceiptRefersToSameOperation()
+    {
+        OperationHandle handle = this.getStatusInfo().startOperationWithHandle( OPERATION_NAME );
+        this.getStatusInfo().updateOperation( handle.getReceipt(), 1 );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        handle.update( 1 );
+        Assert.assertEquals( "All updates must go to the same operation.", 3, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getThreadSnapshots().iterator().next().getOperationStatuses().get( 0 )
+            .getStatusInfo().getCurrentSteps() );
+        Assert.assertTrue( this.getStatusInfo().endOperation( handle.getReceipt() ) );
+        Assert.assertFalse( "Handle must see that operation was ended via receipt.", handle.isActive() );
+    }
+
+    @Test(expected = NoOperationInProgressException.class)
+    public void testStaleHandleCanNotBeUpdated()
+    {
+        OperationHandle handle = this.getStatusInfo().startOperationWithHandle( OPERATION_NAME );
+        handle.end();
+        handle.update( 1 );
+    }
+
+    @Test(expected = NoOperationInProgressException.class)
+    public void testStaleHandleCanNotStartSubOperations()
+    {
+        OperationHandle handle = this.getStatusInfo().startOperationWithHandle( OPERATION_NAME );
+        handle.end();
+        handle.subOperation( OPERATION_NAME );
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class OperationIDTest extends AbstractStatusInfoTest
+{
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 5000;
+
+    @Test
+    public void testIdsAndReceiptsAreUniqueAcrossThreads()
+        throws Exception
+    {
+        final Set<String> values = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+        List<Thread> threads = new ArrayList<Thread>();
+        for( int idx = 0; idx < THREADS; ++idx )
+        {
+            threads.add( new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for( int op = 0; op < OPERATIONS_PER_THREAD; ++op )
+                    {
+                        OperationCreationResult creation = getStatusInfo().startOperation( OPERATION_NAME );
+                        values.add( creation.getID() );
+                        values.add( creation.getReceipt() );
+                        getStatusInfo().endOperation( creation.getReceipt() );
+                    }
+                }
+            } ) );
+        }
+        for( Thread thread : threads )
+        {
+            thread.start();
+        }
+        for( Thread thread : threads )
+        {
+            thread.join();
+        }
+        Assert.assertEquals( "All IDs and receipts must be unique.", 2 * THREADS * OPERATIONS_PER_THREAD, values
+            .size() );
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.LatencyDistribution;
+import org.statusinfo.api.OperationMetrics;
+import org.statusinfo.api.StatusInfoService.Operation;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class OperationMetricsTest extends AbstractConfiguredStatusInfoTest
+{
+    // Histogram keeps values within about 6 percent
+    private static final double MAX_ERROR = 0.07;
+
+    private final ManualClock _clock = new ManualClock();
+
+    @Override
+    protected StatusInfoSettings createSettings()
+    {
+        return new StatusInfoSettings().setClock( this._clock ).setCollectingMetrics( true );
+    }
+
+    @Test
+    public void testCountsAreKeptPerName()
+    {
+        this.perform( 10L, 2, false );
+        this.perform( 20L, 3, false );
+        try
+        {
+            this.perform( 1000L, 0, true );
+            Assert.fail( "Operation must throw." );
+        }
+        catch( IllegalStateException ise )
+        {
+            // Expected
+        }
+        this.getStatusInfo().startOperation( OPERATION_NAME );
+
+        OperationMetrics metrics = this.getStatusInfo().getOperationMetrics( OPERATION_NAME );
+        Assert.assertEquals( "Started operations must be counted.", 4L, metrics.getStarted() );
+        Assert.assertEquals( "Completed operations must be counted.", 3L, metrics.getCompleted() );
+        Assert.assertEquals( "Operations in progress must be counted.", 1L, metrics.getInFlight() );
+        Assert.assertEquals( "Failed operations must be counted.", 1L, metrics.getFailed() );
+        Assert.assertEquals( "Steps must be summed.", 5L, metrics.getTotalSteps() );
+
+        LatencyDistribution latencies = metrics.getLatencies();
+        Assert.assertEquals( "Durations of completed operations must be recorded.", 3L, latencies.getCount() );
+        Assert.assertEquals( "Median must be the middle duration.", 20L, latencies.getValueAtPercentile( 50.0 ) );
+        Assert.assertEquals( "Highest percentile must be the longest duration.", 1000L,
+            latencies.getValueAtPercentile( 100.0 ) );
+        Assert.assertEquals( "Mean must be exact.", 1030.0 / 3, latencies.getMean(), 0.001 );
+        Assert.assertNull( "Names never started must not have metrics.",
+            this.getStatusInfo().getOperationMetrics( "Not started." ) );
+        Assert.assertEquals( "All names must be listed.", 1, this.getStatusInfo().getAllOperationMetrics().size() );
+    }
+
+    @Test
+    public void testPercentilesAreApproximatedWithinBucketWidth()
+    {
+        int amount = 10000;
+        for( int idx = 1; idx <= amount; ++idx )
+        {
+            this.perform( idx * 1000L, 0, false );
+        }
+
+        LatencyDistribution latencies = this.getStatusInfo().getOperationMetrics( OPERATION_NAME ).getLatencies();
+        this.assertApproximately( amount / 2 * 1000L, latencies.getValueAtPercentile( 50.0 ) );
+        this.assertApproximately( amount * 990L, latencies.getValueAtPercentile( 99.0 ) );
+        this.assertApproximately( amount * 999L, latencies.getValueAtPercentile( 99.9 ) );
+        Assert.assertEquals( "Maximum must be exact.", amount * 1000L, latencies.getMax() );
+    }
+
+    @Test
+    public void testHistoricalDurationsSeedEstimate()
+    {
+        this.perform( 1000L, 0, false );
+        this.perform( 3000L, 0, false );
+
+        this.getStatusInfo().startOperation( OPERATION_NAME );
+        this._clock.advance( 500L );
+        Assert.assertEquals( "Estimate must be based on mean duration of earlier operations.", 1500L, this
+            .getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots().iterator().next()
+            .getOperationStatuses().get( 0 ).getStatusInfo().getEstimatedTimeRemaining() );
+    }
+
+    private void perform( final long duration, final int steps, final boolean fail )
+    {
+        this.getStatusInfo().performOperation( OPERATION_NAME, new Operation<Void, RuntimeException>()
+        {
+            @Override
+            public Void doOperation()
+            {
+                getStatusInfo().updateCurrentOperation( steps );
+                _clock.advance( duration );
+                if( fail )
+                {
+                    throw new IllegalStateException( "Failing on purpose." );
+                }
+                return null;
+            }
+        } );
+    }
+
+    private void assertApproximately( long expected, long actual )
+    {
+        Assert.assertTrue( "Expected about " + expected + ", but was " + actual + ".",
+            Math.abs( expected - actual ) <= expected * MAX_ERROR );
+    }
+}
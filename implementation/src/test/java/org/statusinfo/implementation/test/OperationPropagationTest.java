@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoService;
+import org.statusinfo.api.ThreadSnapshot;
+import org.statusinfo.api.concurrent.OperationPropagatingExecutorService;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class OperationPropagationTest extends AbstractStatusInfoTest
+{
+    private static final String TASK_NAME = "task";
+
+    @Test
+    public void testTasksRunAsSubOperationsOfSubmittingOperation()
+        throws Exception
+    {
+        final StatusInfoService service = this.getStatusInfo();
+        ExecutorService executor = new OperationPropagatingExecutorService( service,
+            Executors.newSingleThreadExecutor(), TASK_NAME );
+        Callable<StatusInfo> currentStatus = new Callable<StatusInfo>()
+        {
+            @Override
+            public StatusInfo call()
+            {
+                return currentStatusInfo( service );
+            }
+        };
+        try
+        {
+            OperationCreationResult parent = service.startOperation( OPERATION_NAME );
+            StatusInfo task = executor.submit( currentStatus ).get();
+            Assert.assertEquals( "Task must run as its own operation.", TASK_NAME, task.getName() );
+            Assert.assertEquals( "Task must be a sub-operation of the submitting operation.", parent.getID(), task
+                .getParent().getID() );
+
+            StatusInfo afterTask = executor.submit( currentStatus ).get();
+            Assert.assertFalse( "Each task must have its own operation.", task.getID().equals( afterTask.getID() ) );
+            service.endOperation( parent.getReceipt() );
+
+            Assert.assertNull( "Tasks submitted without current operation must not get one.",
+                executor.submit( currentStatus ).get() );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownNowReturnsOriginalTasks()
+        throws Exception
+    {
+        final StatusInfoService service = this.getStatusInfo();
+        ExecutorService executor = new OperationPropagatingExecutorService( service,
+            Executors.newSingleThreadExecutor(), TASK_NAME );
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch finish = new CountDownLatch( 1 );
+        Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+        OperationCreationResult parent = service.startOperation( OPERATION_NAME );
+        try
+        {
+            // Keep the only worker busy, so that the task stays queued
+            executor.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    started.countDown();
+                    try
+                    {
+                        finish.await();
+                    }
+                    catch( InterruptedException ie )
+                    {
+                        // Interrupted by shutdownNow
+                    }
+                }
+            } );
+            started.await();
+            executor.execute( task );
+            Assert.assertEquals( "Tasks which never ran must be returned as they were given.", Arrays.asList( task ),
+                executor.shutdownNow() );
+        }
+        finally
+        {
+            finish.countDown();
+            service.endOperation( parent.getReceipt() );
+        }
+    }
+
+    private static StatusInfo currentStatusInfo( StatusInfoService service )
+    {
+        StatusInfo result = null;
+        for( ThreadSnapshot thread : service.getSnapshotOfCurrentState().getThreadSnapshots() )
+        {
+            if( Thread.currentThread().equals( thread.getThread() ) )
+            {
+                result = thread.getOperationStatuses().get( 0 ).getStatusInfo();
+            }
+        }
+        return result;
+    }
+}
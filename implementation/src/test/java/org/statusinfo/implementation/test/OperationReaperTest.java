@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+import org.statusinfo.api.StatusInfoSnapshot;
+import org.statusinfo.api.StatusInfoSubscription;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+import org.statusinfo.api.bootstrap.StatusInfoSettings.LeakAction;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class OperationReaperTest extends AbstractConfiguredStatusInfoTest
+{
+    // Operations only become too old when tests advance the clock
+    private static final long MAX_AGE = TimeUnit.HOURS.toNanos( 1L );
+    private static final long MAX_WAIT_MILLIS = 10000L;
+
+    private final ManualClock _clock = new ManualClock();
+    private final BlockingQueue<String> _ended = new LinkedBlockingQueue<String>();
+
+    @Override
+    protected StatusInfoSettings createSettings()
+    {
+        return new StatusInfoSettings().setClock( this._clock )
+            .setReaping( 10, TimeUnit.MILLISECONDS, 100, LeakAction.END )
+            .setMaxOperationAge( MAX_AGE, TimeUnit.NANOSECONDS ).setRecordingCreationSites( true );
+    }
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        this.getStatusInfo().addStatusInfoListener( new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                _ended.add( statusInfo.getName() );
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        }, new StatusInfoSubscription().setChangeTypes( ChangeType.ENDED ) );
+    }
+
+    @Test
+    public void testOperationsOfTerminatedThreadsAreEnded()
+        throws Exception
+    {
+        Thread thread = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                getStatusInfo().startOperation( OPERATION_NAME );
+                getStatusInfo().startOperation( OPERATION_NAME );
+            }
+        } );
+        thread.start();
+        thread.join();
+
+        Assert.assertEquals( "Operations of terminated thread must be ended.", OPERATION_NAME,
+            this._ended.poll( MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS ) );
+        Assert.assertFalse( "No operations must be in progress.", this.getStatusInfo().getSnapshotOfCurrentState()
+            .getThreadSnapshots().iterator().hasNext() );
+    }
+
+    @Test
+    public void testOperationsWithoutUpdatesAreEnded()
+        throws Exception
+    {
+        this._clock.set( 0L );
+        this.getStatusInfo().startOperation( "stale" );
+        this._clock.advance( MAX_AGE );
+        this.startAsyncOperation( "fresh" );
+        this._clock.advance( 1L );
+
+        Assert.assertEquals( "Operation without updates must be ended.", "stale",
+            this._ended.poll( MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS ) );
+        Assert.assertFalse( "No operations must be in progress in this thread.", this.getStatusInfo()
+            .getSnapshotOfCurrentState().getThreadSnapshots().iterator().hasNext() );
+        this.assertAsyncOperationsInProgress( "fresh" );
+    }
+
+    @Test
+    public void testAsyncOperationsWithoutUpdatesAreEnded()
+        throws Exception
+    {
+        this._clock.set( 0L );
+        this.startAsyncOperation( "stale" );
+        this._clock.advance( MAX_AGE );
+        this.startAsyncOperation( "fresh" );
+        this._clock.advance( 1L );
+
+        Assert.assertEquals( "Asynchronous operation without updates must be ended.", "stale",
+            this._ended.poll( MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS ) );
+        this.assertAsyncOperationsInProgress( "fresh" );
+    }
+
+    private void startAsyncOperation( String name )
+    {
+        this.getStatusInfo().performOperationAsync( name, new Supplier<CompletionStage<Object>>()
+        {
+            @Override
+            public CompletionStage<Object> get()
+            {
+                // Never completes, so only the reaper ends the operation
+                return new CompletableFuture<Object>();
+            }
+        } );
+    }
+
+    private void assertAsyncOperationsInProgress( String name )
+    {
+        StringBuilder names = new StringBuilder();
+        for( StatusInfoSnapshot snapshot : this.getStatusInfo().getSnapshotOfCurrentState()
+            .getAsyncOperationStatuses() )
+        {
+            names.append( snapshot.getStatusInfo().getName() );
+        }
+        Assert.assertEquals( "Only operations younger than maximum age must be in progress.", name,
+            names.toString() );
+    }
+}
@@ -15,7 +15,9 @@
 package org.statusinfo.implementation.test;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -34,6 +36,8 @@ import org.statusinfo.implementation.SnapshotToString;
  */
 public class OperationSnapshotTest extends AbstractStatusInfoTest
 {
+    private static final int DEPTH = 5;
+    private static final int SNAPSHOTS = 2000;
 
     @Test
     public void testEmptySnapshot()
@@ -91,6 +95,105 @@ public class OperationSnapshotTest extends AbstractStatusInfoTest
         this.verifyEmptySnapshot();
     }
 
+    @Test
+    public void testSnapshotDoesNotChangeAfterwards()
+        throws Exception
+    {
+        OperationCreationResult parent = this.getStatusInfo().startOperation( OPERATION_NAME, 10 );
+        OperationCreationResult child = this.getStatusInfo().startOperation( OPERATION_NAME, 10 );
+        this.getStatusInfo().updateOperation( parent.getReceipt(), 1 );
+        this.getStatusInfo().updateOperation( child.getReceipt(), 2 );
+        OperationSnapshot snapshot = this.getStatusInfo().getSnapshotOfCurrentState();
+
+        this.getStatusInfo().updateOperation( parent.getReceipt(), 3 );
+        this.getStatusInfo().updateOperation( child.getReceipt(), 3 );
+        this.getStatusInfo().endOperation( parent.getReceipt() );
+
+        List<StatusInfoSnapshot> statuses = snapshot.getThreadSnapshots().iterator().next().getOperationStatuses();
+        Assert.assertEquals( "Both operations must be in snapshot.", 2, statuses.size() );
+        StatusInfo childInfo = statuses.get( 0 ).getStatusInfo();
+        StatusInfo parentInfo = statuses.get( 1 ).getStatusInfo();
+        Assert.assertEquals( "Child steps must be frozen.", 2, childInfo.getCurrentSteps() );
+        Assert.assertEquals( "Parent steps must be frozen.", 1, parentInfo.getCurrentSteps() );
+        Assert.assertSame( "Parent of child must be the frozen parent.", parentInfo, childInfo.getParent() );
+    }
+
+    @Test
+    public void testConcurrentSnapshotsSeeWholeStackOfEachThread()
+        throws Exception
+    {
+        final OperationCreationResult root = this.getStatusInfo().startOperation( "level-0" );
+        final Thread mainThread = Thread.currentThread();
+        final AtomicBoolean stop = new AtomicBoolean();
+        Thread worker = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while( !stop.get() )
+                {
+                    OperationCreationResult first = getStatusInfo().startSubOperation( root.getReceipt(), "level-1" );
+                    for( int level = 2; level <= DEPTH; ++level )
+                    {
+                        getStatusInfo().startOperation( "level-" + level );
+                        getStatusInfo().updateCurrentOperation( 1 );
+                    }
+                    getStatusInfo().updateOperation( root.getReceipt(), 1 );
+                    // Ends all nested operations too
+                    getStatusInfo().endOperation( first.getReceipt() );
+                }
+            }
+        } );
+        worker.start();
+        try
+        {
+            int previousRootSteps = 0;
+            for( int idx = 0; idx < SNAPSHOTS; ++idx )
+            {
+                for( ThreadSnapshot thread : this.getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots() )
+                {
+                    List<StatusInfoSnapshot> statuses = thread.getOperationStatuses();
+                    if( thread.getThread() == worker )
+                    {
+                        // Stack of the worker is seen as it was at one moment: from innermost to outermost, each
+                        // operation nested within the next one, and the next one being its frozen parent
+                        int innermost = statuses.size();
+                        for( int level = 0; level < statuses.size(); ++level )
+                        {
+                            StatusInfo info = statuses.get( level ).getStatusInfo();
+                            Assert.assertEquals( "Operations of thread must not be torn.", "level-"
+                                + (innermost - level), info.getName() );
+                            if( level + 1 < statuses.size() )
+                            {
+                                Assert.assertSame( "Parent must be the frozen operation below.", statuses.get(
+                                    level + 1 ).getStatusInfo(), info.getParent() );
+                            }
+                            else
+                            {
+                                Assert.assertEquals( "Outermost operation must be nested within root.", "level-0",
+                                    info.getParent().getName() );
+                            }
+                        }
+                        Assert.assertTrue( "Stack must not be deeper than it ever was.", statuses.size() <= DEPTH );
+                    }
+                    else if( thread.getThread() == mainThread )
+                    {
+                        int rootSteps = statuses.get( 0 ).getStatusInfo().getCurrentSteps();
+                        Assert.assertTrue( "Steps of each operation must never be seen decreasing.",
+                            rootSteps >= previousRootSteps );
+                        previousRootSteps = rootSteps;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            stop.set( true );
+            worker.join();
+        }
+        this.getStatusInfo().endOperation( root.getReceipt() );
+    }
+
     protected void verifyOperationSnapshot( OperationSnapshot generatedSnapshot )
     {
         Assert.assertEquals( "Both snapshots must be the same", this.getStatusInfo().getSnapshotOfCurrentState(),
@@ -114,12 +217,24 @@ public class OperationSnapshotTest extends AbstractStatusInfoTest
                 return list;
             }
 
+            @Override
+            public List<StatusInfoSnapshot> getAsyncOperationStatuses()
+            {
+                return Collections.emptyList();
+            }
+
             @Override
             public int getAmountOfAllListeners()
             {
                 return amountOfListeners;
             }
 
+            @Override
+            public long getAmountOfDroppedEvents()
+            {
+                return 0L;
+            }
+
             @Override
             public String toString()
             {
@@ -202,6 +317,48 @@ public class OperationSnapshotTest extends AbstractStatusInfoTest
                         return parent;
                     }
 
+                    @Override
+                    public long getStartTime()
+                    {
+                        return NO_TIME;
+                    }
+
+                    @Override
+                    public long getLastUpdateTime()
+                    {
+                        return NO_TIME;
+                    }
+
+                    @Override
+                    public long getEndTime()
+                    {
+                        return NO_TIME;
+                    }
+
+                    @Override
+                    public long getDuration()
+                    {
+                        return NO_TIME;
+                    }
+
+                    @Override
+                    public double getStepRate()
+                    {
+                        return 0.0;
+                    }
+
+                    @Override
+                    public long getEstimatedTimeRemaining()
+                    {
+                        return NO_TIME;
+                    }
+
+                    @Override
+                    public double getProgress()
+                    {
+                        return 0.0;
+                    }
+
                     @Override
                     public String toString()
                     {
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.OperationHandle;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+import org.statusinfo.api.StatusInfoSubscription;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class OperationTimingTest extends AbstractConfiguredStatusInfoTest
+{
+    private final ManualClock _clock = new ManualClock();
+
+    @Override
+    protected StatusInfoSettings createSettings()
+    {
+        return new StatusInfoSettings().setClock( this._clock );
+    }
+
+    @Test
+    public void testTimesAreTakenFromClock()
+    {
+        final long[] ended = new long[2];
+        this.getStatusInfo().addStatusInfoListener( new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                ended[0] = statusInfo.getEndTime();
+                ended[1] = statusInfo.getDuration();
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        }, new StatusInfoSubscription().setChangeTypes( ChangeType.ENDED ) );
+
+        this._clock.set( 100L );
+        OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+        this._clock.set( 150L );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        this._clock.set( 170L );
+        StatusInfo snapshot = this.getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots().iterator().next()
+            .getOperationStatuses().get( 0 ).getStatusInfo();
+        this._clock.set( 200L );
+        this.getStatusInfo().endOperation( creation.getReceipt() );
+
+        Assert.assertEquals( "Start time must be taken when starting.", 100L, snapshot.getStartTime() );
+        Assert.assertEquals( "Update time must be taken when updating.", 150L, snapshot.getLastUpdateTime() );
+        Assert.assertEquals( "Operation in snapshot must not have end time.", StatusInfo.NO_TIME,
+            snapshot.getEndTime() );
+        Assert.assertEquals( "Duration in snapshot must last until snapshot.", 70L, snapshot.getDuration() );
+        Assert.assertEquals( "End time must be taken when ending.", 200L, ended[0] );
+        Assert.assertEquals( "Duration must last until end.", 100L, ended[1] );
+    }
+
+    @Test
+    public void testStepRateAndEstimateFollowUpdates()
+    {
+        long second = TimeUnit.SECONDS.toNanos( 1L );
+        this._clock.set( 0L );
+        OperationHandle handle = this.getStatusInfo().startOperationWithHandle( OPERATION_NAME, 100 );
+        this._clock.set( second );
+        handle.update( 10 );
+        StatusInfo snapshot = this.currentStatusInfo();
+        Assert.assertEquals( "First sample must give the rate as is.", 10.0, snapshot.getStepRate(), 0.001 );
+        Assert.assertEquals( "Estimate must be remaining steps at current rate.", 9L * second,
+            snapshot.getEstimatedTimeRemaining() );
+
+        this._clock.set( 2L * second );
+        handle.update( 20 );
+        double rate = this.currentStatusInfo().getStepRate();
+        Assert.assertTrue( "Rate must move towards recent rate, but was " + rate + ".", rate > 10.0 && rate < 20.0 );
+
+        this._clock.set( 12L * second );
+        Assert.assertTrue( "Rate must slow down without updates.", this.currentStatusInfo().getStepRate() < rate / 2 );
+        handle.end();
+    }
+
+    private StatusInfo currentStatusInfo()
+    {
+        return this.getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots().iterator().next()
+            .getOperationStatuses().get( 0 ).getStatusInfo();
+    }
+}
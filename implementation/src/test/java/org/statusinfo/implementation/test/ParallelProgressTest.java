@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationHandle;
+import org.statusinfo.api.StatusInfoSnapshot;
+import org.statusinfo.api.ThreadSnapshot;
+import org.statusinfo.api.concurrent.SubOperationForkJoinTask;
+import org.statusinfo.api.concurrent.TrackedSpliterator;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class ParallelProgressTest extends AbstractStatusInfoTest
+{
+    private static final int AMOUNT = 10000;
+    private static final int LEAF_SIZE = 100;
+    private static final String SPLIT_NAME = "split";
+
+    private static class SumTask extends RecursiveTask<Integer>
+    {
+        private final OperationHandle _operation;
+        private final int _start;
+        private final int _end;
+
+        private SumTask( OperationHandle operation, int start, int end )
+        {
+            this._operation = operation;
+            this._start = start;
+            this._end = end;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            int result = 0;
+            if( this._end - this._start <= LEAF_SIZE )
+            {
+                for( int idx = this._start; idx < this._end; ++idx )
+                {
+                    result += idx;
+                }
+                this._operation.update( this._end - this._start );
+            }
+            else
+            {
+                int middle = (this._start + this._end) / 2;
+                SumTask left = new SumTask( this._operation, this._start, middle );
+                left.fork();
+                result = new SumTask( this._operation, middle, this._end ).compute() + left.join();
+            }
+            return result;
+        }
+    }
+
+    @Test
+    public void testParallelStreamAddsStepsOfAllElements()
+    {
+        List<Integer> elements = new ArrayList<Integer>( Collections.nCopies( AMOUNT, 1 ) );
+        OperationHandle operation = this.getStatusInfo().startSharedOperation( OPERATION_NAME, AMOUNT );
+        int sum = StreamSupport.stream( new TrackedSpliterator<Integer>( elements.spliterator(), operation ), true )
+            .mapToInt( new ToIntFunction<Integer>()
+            {
+                @Override
+                public int applyAsInt( Integer value )
+                {
+                    return value;
+                }
+            } ).sum();
+        Assert.assertEquals( "All elements must be traversed.", AMOUNT, sum );
+        Assert.assertEquals( "Each element must add a step.", AMOUNT, this.findSteps( operation ) );
+        operation.end();
+    }
+
+    @Test
+    public void testShortCircuitingStreamAddsStepsOfTraversedElements()
+    {
+        List<Integer> elements = new ArrayList<Integer>();
+        for( int idx = 0; idx < AMOUNT; ++idx )
+        {
+            elements.add( idx );
+        }
+        OperationHandle operation = this.getStatusInfo().startSharedOperation( OPERATION_NAME, AMOUNT );
+        TrackedSpliterator<Integer> spliterator = new TrackedSpliterator<Integer>( elements.spliterator(), operation );
+        boolean found = StreamSupport.stream( spliterator, false ).anyMatch( new Predicate<Integer>()
+        {
+            @Override
+            public boolean test( Integer value )
+            {
+                return value == LEAF_SIZE - 1;
+            }
+        } );
+        Assert.assertTrue( "Element must be found.", found );
+        Assert.assertTrue( "Only traversed elements must add steps.", this.findSteps( operation ) <= LEAF_SIZE );
+        spliterator.flush();
+        Assert.assertEquals( "Each traversed element must add a step once flushed.", LEAF_SIZE,
+            this.findSteps( operation ) );
+        operation.end();
+    }
+
+    @Test
+    public void testFailingTraversalAddsStepsOfTraversedElements()
+    {
+        List<Integer> elements = new ArrayList<Integer>( Collections.nCopies( AMOUNT, 1 ) );
+        OperationHandle operation = this.getStatusInfo().startSharedOperation( OPERATION_NAME, AMOUNT );
+        final int[] traversed = new int[1];
+        try
+        {
+            new TrackedSpliterator<Integer>( elements.spliterator(), operation ).forEachRemaining(
+                new Consumer<Integer>()
+                {
+                    @Override
+                    public void accept( Integer value )
+                    {
+                        if( traversed[0] == LEAF_SIZE )
+                        {
+                            throw new IllegalStateException();
+                        }
+                        ++traversed[0];
+                    }
+                } );
+            Assert.fail( "Traversal must fail." );
+        }
+        catch( IllegalStateException ise )
+        {
+            // Expected
+        }
+        Assert.assertEquals( "Each traversed element must add a step.", LEAF_SIZE, this.findSteps( operation ) );
+        operation.end();
+    }
+
+    @Test
+    public void testTraversalAfterOperationHasEndedAddsNoSteps()
+    {
+        List<Integer> elements = new ArrayList<Integer>( Collections.nCopies( AMOUNT, 1 ) );
+        OperationHandle operation = this.getStatusInfo().startSharedOperation( OPERATION_NAME, AMOUNT );
+        TrackedSpliterator<Integer> spliterator = new TrackedSpliterator<Integer>( elements.spliterator(), operation );
+        final int[] traversed = new int[1];
+        Consumer<Integer> action = new Consumer<Integer>()
+        {
+            @Override
+            public void accept( Integer value )
+            {
+                ++traversed[0];
+            }
+        };
+        for( int idx = 0; idx < LEAF_SIZE; ++idx )
+        {
+            spliterator.tryAdvance( action );
+        }
+        operation.end();
+        spliterator.forEachRemaining( action );
+        spliterator.flush();
+
+        Assert.assertEquals( "All elements must be traversed.", AMOUNT, traversed[0] );
+        Assert.assertFalse( "Operation must stay ended.", operation.isActive() );
+    }
+
+    @Test
+    public void testForkJoinLeavesAddStepsToParent()
+    {
+        OperationHandle operation = this.getStatusInfo().startSharedOperation( OPERATION_NAME, AMOUNT );
+        ForkJoinPool pool = new ForkJoinPool( 4 );
+        try
+        {
+            int middle = AMOUNT / 2;
+            SubOperationForkJoinTask<Integer> left = new SubOperationForkJoinTask<Integer>( operation, SPLIT_NAME,
+                new SumTask( operation, 0, middle ) );
+            SubOperationForkJoinTask<Integer> right = new SubOperationForkJoinTask<Integer>( operation, SPLIT_NAME,
+                new SumTask( operation, middle, AMOUNT ) );
+            pool.execute( left );
+            pool.execute( right );
+            Assert.assertEquals( "Tasks must compute their results.", AMOUNT * (AMOUNT - 1) / 2, left.join()
+                + right.join() );
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        Assert.assertEquals( "Each leaf must add its steps.", AMOUNT, this.findSteps( operation ) );
+        for( ThreadSnapshot thread : this.getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots() )
+        {
+            for( StatusInfoSnapshot status : thread.getOperationStatuses() )
+            {
+                Assert.assertFalse( "Splits must have ended.", SPLIT_NAME.equals( status.getStatusInfo().getName() ) );
+            }
+        }
+        operation.end();
+    }
+
+    private int findSteps( OperationHandle operation )
+    {
+        int result = -1;
+        for( ThreadSnapshot thread : this.getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots() )
+        {
+            for( StatusInfoSnapshot status : thread.getOperationStatuses() )
+            {
+                if( status.getStatusInfo().getID().equals( operation.getID() ) )
+                {
+                    result = status.getStatusInfo().getCurrentSteps();
+                }
+            }
+        }
+        return result;
+    }
+}
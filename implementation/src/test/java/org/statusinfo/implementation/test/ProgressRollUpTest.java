@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationHandle;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoService;
+import org.statusinfo.api.StatusInfoSnapshot;
+import org.statusinfo.api.ThreadSnapshot;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class ProgressRollUpTest extends AbstractStatusInfoTest
+{
+    private static final double DELTA = 0.000001;
+
+    @Test
+    public void testChildrenContributeTheirShareOfProgress()
+    {
+        OperationHandle root = this.getStatusInfo().startOperationWithHandle( OPERATION_NAME, 10 );
+        root.update( 2 );
+        this.assertProgress( "Own steps must count.", 0.2, root );
+
+        OperationHandle first = root.subOperation( OPERATION_NAME, 4, 0.5 );
+        first.update( 2 );
+        this.assertProgress( "Child must contribute its share.", 0.45, root );
+        first.end();
+        this.assertProgress( "Ended child must contribute its full share.", 0.7, root );
+
+        OperationHandle indeterminate = root.subOperation( OPERATION_NAME, StatusInfoService.NO_MAX_STEPS, 0.5 );
+        indeterminate.update( 100 );
+        this.assertProgress( "Steps of child without maximum must not count.", 0.7, root );
+
+        OperationHandle grandChild = indeterminate.subOperation( OPERATION_NAME, 2, 0.5 );
+        grandChild.update( 1 );
+        this.assertProgress( "Child without maximum must contribute progress of its children.", 0.25, indeterminate );
+        this.assertProgress( "Progress must propagate up the tree.", 0.825, root );
+
+        indeterminate.end();
+        this.assertProgress( "Progress must not exceed 1.", 1.0, root );
+        root.end();
+    }
+
+    @Test
+    public void testChildrenWithoutShareDoNotContribute()
+    {
+        OperationHandle root = this.getStatusInfo().startOperationWithHandle( OPERATION_NAME, 10 );
+        OperationHandle child = root.subOperation( OPERATION_NAME, 1 );
+        child.update( 1 );
+        this.assertProgress( "Child without share must not contribute.", 0.0, root );
+        this.assertProgress( "Child must have its own progress.", 1.0, child );
+        root.end();
+    }
+
+    private void assertProgress( String message, double expected, OperationHandle handle )
+    {
+        StatusInfo found = null;
+        for( ThreadSnapshot thread : this.getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots() )
+        {
+            for( StatusInfoSnapshot status : thread.getOperationStatuses() )
+            {
+                if( status.getStatusInfo().getID().equals( handle.getID() ) )
+                {
+                    found = status.getStatusInfo();
+                }
+            }
+        }
+        Assert.assertNotNull( "Operation must be in progress.", found );
+        Assert.assertEquals( message, expected, found.getProgress(), DELTA );
+    }
+}
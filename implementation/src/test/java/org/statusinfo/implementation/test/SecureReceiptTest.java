@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.bootstrap.OperationIDGenerator;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class SecureReceiptTest extends AbstractConfiguredStatusInfoTest
+{
+    private static final String ID_PREFIX = "custom-";
+
+    @Override
+    protected StatusInfoSettings createSettings()
+    {
+        final AtomicInteger counter = new AtomicInteger();
+        return new StatusInfoSettings().setIDGenerator( new OperationIDGenerator()
+        {
+            @Override
+            public String newID()
+            {
+                return ID_PREFIX + counter.incrementAndGet();
+            }
+
+            @Override
+            public String newReceipt()
+            {
+                return ID_PREFIX + "receipt-" + counter.incrementAndGet();
+            }
+        } ).setSecureReceipts( true );
+    }
+
+    @Test
+    public void testCustomGeneratorIsUsedForIDsAndReceiptsAreRandom()
+    {
+        OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+        Assert.assertTrue( "ID must come from the custom generator.", creation.getID().startsWith( ID_PREFIX ) );
+        Assert.assertEquals( "Receipt must be a random UUID.", creation.getReceipt(), UUID.fromString(
+            creation.getReceipt() ).toString() );
+        Assert.assertTrue( this.getStatusInfo().endOperation( creation.getReceipt() ) );
+    }
+}
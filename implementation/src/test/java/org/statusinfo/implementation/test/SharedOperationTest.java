@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationHandle;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class SharedOperationTest extends AbstractStatusInfoTest
+{
+    private static final int THREADS = 8;
+    private static final int UPDATES_PER_THREAD = 20000;
+
+    @Test
+    public void testConcurrentUpdatesOfSharedOperationAreNotLost()
+        throws Exception
+    {
+        final OperationHandle handle = this.getStatusInfo().startSharedOperation( OPERATION_NAME,
+            THREADS * UPDATES_PER_THREAD );
+        List<Thread> threads = new ArrayList<Thread>();
+        for( int idx = 0; idx < THREADS; ++idx )
+        {
+            final boolean useReceipt = idx % 2 == 0;
+            threads.add( new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for( int update = 0; update < UPDATES_PER_THREAD; ++update )
+                    {
+                        if( useReceipt )
+                        {
+                            getStatusInfo().updateOperation( handle.getReceipt(), 1 );
+                        }
+                        else
+                        {
+                            handle.update( 1 );
+                        }
+                    }
+                }
+            } ) );
+        }
+        for( Thread thread : threads )
+        {
+            thread.start();
+        }
+        for( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        Assert.assertEquals( "All updates must be counted.", THREADS * UPDATES_PER_THREAD, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getThreadSnapshots().iterator().next().getOperationStatuses().get( 0 )
+            .getStatusInfo().getCurrentSteps() );
+        Assert.assertTrue( "Shared operation must end normally.", handle.end() );
+    }
+}
@@ -14,13 +14,19 @@
 
 package org.statusinfo.implementation.test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.statusinfo.api.ListenerRegistration;
 import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.OperationSnapshot;
 import org.statusinfo.api.StatusInfo;
 import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.skeletons.CurrentThreadStatusInfoListenerSkeleton;
 
 /**
  * 
@@ -138,4 +144,252 @@ public class StatusInfoListenerTest extends AbstractStatusInfoTest
         this.getStatusInfo().endOperation( creation.getReceipt() );
         Assert.assertEquals( "Amount of triggers must be zero.", 0, latch.getCount() );
     }
+
+    @Test
+    public void testUnregisteringListener()
+        throws Exception
+    {
+        final AtomicInteger notifications = new AtomicInteger();
+        ListenerRegistration registration = this.getStatusInfo().addStatusInfoListener( new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                notifications.incrementAndGet();
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        } );
+        Assert.assertTrue( "Listener must be active after adding.", registration.isActive() );
+        this.getStatusInfo().endOperation( this.getStatusInfo().startOperation( OPERATION_NAME ).getReceipt() );
+        Assert.assertEquals( "Listener must have received both notifications.", 2, notifications.get() );
+
+        registration.unregister();
+        registration.unregister();
+        Assert.assertFalse( "Listener must not be active after unregistering.", registration.isActive() );
+        this.getStatusInfo().endOperation( this.getStatusInfo().startOperation( OPERATION_NAME ).getReceipt() );
+        Assert.assertEquals( "Listener must not receive notifications after unregistering.", 2, notifications.get() );
+        Assert.assertEquals( "No listeners must be left.", 0, this.getStatusInfo().getSnapshotOfCurrentState()
+            .getAmountOfAllListeners() );
+    }
+
+    @Test
+    public void testListenerChurnKeepsRemainingListeners()
+        throws Exception
+    {
+        final AtomicInteger notifications = new AtomicInteger();
+        StatusInfoListener listener = new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                notifications.incrementAndGet();
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        };
+        List<ListenerRegistration> registrations = new ArrayList<ListenerRegistration>();
+        for( int idx = 0; idx < 100; ++idx )
+        {
+            registrations.add( this.getStatusInfo().addStatusInfoListener( listener ) );
+        }
+        for( int idx = 0; idx < registrations.size(); idx += 2 )
+        {
+            registrations.get( idx ).unregister();
+        }
+        Assert.assertEquals( "Half of the listeners must be left.", 50, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getAmountOfAllListeners() );
+        this.getStatusInfo().updateOperation( this.getStatusInfo().startOperation( OPERATION_NAME ).getReceipt(), 1 );
+        Assert.assertEquals( "Each remaining listener must be notified exactly once per event.", 100, notifications
+            .get() );
+    }
+
+    @Test
+    public void testThreadBoundListenersOnlySeeTheirThread()
+        throws Exception
+    {
+        final AtomicInteger otherThreadQueries = new AtomicInteger();
+        final AtomicInteger thisThreadNotifications = new AtomicInteger();
+        List<ListenerRegistration> registrations = new ArrayList<ListenerRegistration>();
+        for( int idx = 0; idx < 100; ++idx )
+        {
+            registrations.add( this.getStatusInfo().addStatusInfoListener(
+                new CurrentThreadStatusInfoListenerSkeleton( new Thread() )
+                {
+
+                    @Override
+                    public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+                    {
+                    }
+
+                    @Override
+                    public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+                    {
+                        otherThreadQueries.incrementAndGet();
+                        return super.isInterestedInStatusInfo( statusInfo );
+                    }
+                } ) );
+        }
+        this.getStatusInfo().addStatusInfoListener( new CurrentThreadStatusInfoListenerSkeleton()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                thisThreadNotifications.incrementAndGet();
+            }
+        } );
+
+        OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        this.getStatusInfo().endOperation( creation.getReceipt() );
+        Assert.assertEquals( "Listener of this thread must be notified of all events.", 3, thisThreadNotifications
+            .get() );
+        Assert.assertEquals( "Listeners of other threads must not be consulted.", 0, otherThreadQueries.get() );
+
+        for( ListenerRegistration registration : registrations )
+        {
+            registration.unregister();
+        }
+        Assert.assertEquals( "Only listener of this thread must be left.", 1, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getAmountOfAllListeners() );
+        this.getStatusInfo().updateOperation( this.getStatusInfo().startOperation( OPERATION_NAME ).getReceipt(), 1 );
+        Assert.assertEquals( "Listener of this thread must survive compaction.", 5, thisThreadNotifications.get() );
+    }
+
+    @Test
+    public void testSkeletonWithoutListenedThreadSeesAllThreads()
+        throws Exception
+    {
+        final AtomicInteger notifications = new AtomicInteger();
+        this.getStatusInfo().addStatusInfoListener( new CurrentThreadStatusInfoListenerSkeleton()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                notifications.incrementAndGet();
+            }
+
+            @Override
+            public Thread getListenedThread()
+            {
+                return null;
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        } );
+
+        Thread thread = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                getStatusInfo().endOperation( getStatusInfo().startOperation( OPERATION_NAME ).getReceipt() );
+            }
+        } );
+        thread.start();
+        thread.join();
+        Assert.assertEquals( "Listener must be consulted about operations of other threads.", 2, notifications.get() );
+    }
+
+    @Test
+    public void testDedicatedListenersAreRemovedPerOperation()
+        throws Exception
+    {
+        StatusInfoListener listener = new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        };
+        this.getStatusInfo().addStatusInfoListener( listener );
+        OperationCreationResult outer = this.getStatusInfo().startOperation( OPERATION_NAME );
+        for( int idx = 0; idx < 2; ++idx )
+        {
+            this.getStatusInfo().addStatusInfoListenerUntilEndOfCurrentOperation( listener );
+        }
+        OperationCreationResult inner = this.getStatusInfo().startOperation( OPERATION_NAME );
+        for( int idx = 0; idx < 3; ++idx )
+        {
+            this.getStatusInfo().addStatusInfoListenerUntilEndOfCurrentOperation( listener );
+        }
+        Assert.assertEquals( "All listeners must be registered.", 6, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getAmountOfAllListeners() );
+
+        this.getStatusInfo().endOperation( inner.getReceipt() );
+        OperationSnapshot snapshot = this.getStatusInfo().getSnapshotOfCurrentState();
+        Assert.assertEquals( "Only listeners of inner operation must be removed.", 3, snapshot
+            .getAmountOfAllListeners() );
+        Assert.assertEquals( "Outer operation must keep its dedicated listeners.", 2, snapshot.getThreadSnapshots()
+            .iterator().next().getOperationStatuses().get( 0 ).getAmountOfDedicatedListeners() );
+
+        this.getStatusInfo().endOperation( outer.getReceipt() );
+        Assert.assertEquals( "Only normal listener must be left.", 1, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getAmountOfAllListeners() );
+    }
+
+    @Test
+    public void testDedicatedListenerChurnNotifiesEachListenerOfItsOperation()
+        throws Exception
+    {
+        final AtomicInteger notifications = new AtomicInteger();
+        StatusInfoListener listener = new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                notifications.incrementAndGet();
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        };
+        OperationCreationResult outer = this.getStatusInfo().startOperation( OPERATION_NAME );
+        this.getStatusInfo().addStatusInfoListenerUntilEndOfCurrentOperation( listener );
+        for( int idx = 0; idx < 1000; ++idx )
+        {
+            OperationCreationResult inner = this.getStatusInfo().startOperation( OPERATION_NAME );
+            this.getStatusInfo().addStatusInfoListenerUntilEndOfCurrentOperation( listener );
+            this.getStatusInfo().updateCurrentOperation( 1 );
+            this.getStatusInfo().endOperation( inner.getReceipt() );
+        }
+        // Listener of outer operation gets BEGAN, CHANGED and ENDED of each inner one, the others CHANGED and ENDED
+        Assert.assertEquals( "Each listener must be notified of the events until the end of its operation.",
+            1000 * 5, notifications.get() );
+        Assert.assertEquals( "Only listener of outer operation must be left.", 1, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getAmountOfAllListeners() );
+
+        this.getStatusInfo().endOperation( outer.getReceipt() );
+        Assert.assertEquals( "Listener of outer operation must be notified of its end.", 1000 * 5 + 1,
+            notifications.get() );
+        Assert.assertEquals( "No listeners must be left.", 0, this.getStatusInfo().getSnapshotOfCurrentState()
+            .getAmountOfAllListeners() );
+    }
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.ListenerRegistration;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+import org.statusinfo.api.StatusInfoSubscription;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class SubscriptionTest extends AbstractStatusInfoTest
+{
+    // Deep enough to overflow the stack if ancestors were visited recursively
+    private static final int DEEP_TREE_DEPTH = 100000;
+
+    private static class RecordingListener
+        implements StatusInfoListener
+    {
+        private final List<String> _events = new ArrayList<String>();
+        private int _queries = 0;
+
+        @Override
+        public synchronized void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+        {
+            this._events.add( statusInfo.getName() + ":" + changeType );
+        }
+
+        @Override
+        public synchronized boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+        {
+            ++this._queries;
+            return true;
+        }
+    }
+
+    @Test
+    public void testOnlySubscribedChangeTypesAreDelivered()
+    {
+        RecordingListener listener = new RecordingListener();
+        this.getStatusInfo().addStatusInfoListener( listener,
+            new StatusInfoSubscription().setChangeTypes( ChangeType.ENDED ) );
+        OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        this.getStatusInfo().endOperation( creation.getReceipt() );
+
+        Assert.assertEquals( "Only ENDED must be delivered.", Arrays.asList( OPERATION_NAME + ":ENDED" ),
+            listener._events );
+        Assert.assertEquals( "Listener must not be consulted about other events.", 1, listener._queries );
+    }
+
+    @Test
+    public void testOnlyMatchingNamesAreDelivered()
+    {
+        RecordingListener prefixListener = new RecordingListener();
+        RecordingListener patternListener = new RecordingListener();
+        this.getStatusInfo().addStatusInfoListener( prefixListener,
+            new StatusInfoSubscription().setNamePrefix( "import." ).setChangeTypes( ChangeType.BEGAN ) );
+        this.getStatusInfo().addStatusInfoListener( patternListener,
+            new StatusInfoSubscription().setNamePattern( Pattern.compile( ".*\\.csv" ) ).setChangeTypes(
+                ChangeType.BEGAN ) );
+        for( String name : new String[]
+        {
+            "import.csv",
+            "export.csv",
+            "import.xml"
+        } )
+        {
+            this.getStatusInfo().endOperation( this.getStatusInfo().startOperation( name ).getReceipt() );
+        }
+
+        Assert.assertEquals( "Prefix must be matched.", Arrays.asList( "import.csv:BEGAN", "import.xml:BEGAN" ),
+            prefixListener._events );
+        Assert.assertEquals( "Pattern must be matched.", Arrays.asList( "import.csv:BEGAN", "export.csv:BEGAN" ),
+            patternListener._events );
+        Assert.assertEquals( "Listener must not be consulted about other names.", 2, prefixListener._queries );
+    }
+
+    @Test
+    public void testSubtreeIncludesDescendantsInOtherThreads()
+        throws Exception
+    {
+        final OperationCreationResult root = this.getStatusInfo().startOperation( "root" );
+        RecordingListener listener = new RecordingListener();
+        this.getStatusInfo().addStatusInfoListener( listener,
+            new StatusInfoSubscription().setSubtree( root.getReceipt() ).setChangeTypes( ChangeType.BEGAN,
+                ChangeType.ENDED ) );
+
+        Thread worker = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                getStatusInfo().endOperation( getStatusInfo().startOperation( "unrelated" ).getReceipt() );
+                OperationCreationResult child = getStatusInfo().startSubOperation( root.getReceipt(), "child" );
+                getStatusInfo().endOperation(
+                    getStatusInfo().startSubOperation( child.getReceipt(), "grandchild" ).getReceipt() );
+                getStatusInfo().endOperation( child.getReceipt() );
+            }
+        } );
+        worker.start();
+        worker.join();
+        this.getStatusInfo().endOperation( root.getReceipt() );
+
+        Assert.assertEquals( "Only events of the subtree must be delivered.", Arrays.asList( "child:BEGAN",
+            "grandchild:BEGAN", "grandchild:ENDED", "child:ENDED", "root:ENDED" ), listener._events );
+        Assert.assertEquals( "Subtree listener must be removed once root ends.", 0, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getAmountOfAllListeners() );
+    }
+
+    @Test
+    public void testSubtreeListenersAddedLaterReachExistingDescendants()
+    {
+        OperationCreationResult other = this.getStatusInfo().startOperation( new Thread(), "other" );
+        RecordingListener otherListener = new RecordingListener();
+        this.getStatusInfo().addStatusInfoListener( otherListener,
+            new StatusInfoSubscription().setSubtree( other.getReceipt() ).setChangeTypes( ChangeType.CHANGED ) );
+        OperationCreationResult root = this.getStatusInfo().startOperation( "root" );
+        OperationCreationResult child = this.getStatusInfo().startOperation( "child" );
+        this.getStatusInfo().updateOperation( child.getReceipt(), 1 );
+
+        RecordingListener listener = new RecordingListener();
+        this.getStatusInfo().addStatusInfoListener( listener,
+            new StatusInfoSubscription().setSubtree( root.getReceipt() ).setChangeTypes( ChangeType.CHANGED ) );
+        this.getStatusInfo().updateOperation( child.getReceipt(), 1 );
+        this.getStatusInfo().updateOperation( other.getReceipt(), 1 );
+        this.getStatusInfo().endOperation( other.getReceipt() );
+        this.getStatusInfo().updateOperation( root.getReceipt(), 1 );
+        this.getStatusInfo().endOperation( root.getReceipt() );
+
+        Assert.assertEquals( "Existing descendants must reach listeners added later.", Arrays.asList(
+            "child:CHANGED", "root:CHANGED" ), listener._events );
+        Assert.assertEquals( "Listeners of other subtrees must only see their own subtree.", Arrays.asList(
+            "other:CHANGED" ), otherListener._events );
+    }
+
+    @Test
+    public void testDeepSubtreeReachesListenersOfRoot()
+    {
+        OperationCreationResult root = this.getStatusInfo().startOperation( "root" );
+        for( int idx = 0; idx < DEEP_TREE_DEPTH; ++idx )
+        {
+            this.getStatusInfo().startOperation( "nested" );
+        }
+        RecordingListener listener = new RecordingListener();
+        this.getStatusInfo().addStatusInfoListener( listener,
+            new StatusInfoSubscription().setSubtree( root.getReceipt() ).setChangeTypes( ChangeType.CHANGED ) );
+        this.getStatusInfo().updateCurrentOperation( 1 );
+        this.getStatusInfo().endOperation( root.getReceipt() );
+
+        Assert.assertEquals( "Deepest operation must reach listeners of the root.", Arrays.asList( "nested:CHANGED" ),
+            listener._events );
+    }
+
+    @Test
+    public void testThreadBoundSubtreeListenerOnlyReceivesEventsOfItsThread()
+        throws Exception
+    {
+        final OperationCreationResult root = this.getStatusInfo().startOperation( "root" );
+        RecordingListener listener = new RecordingListener();
+        this.getStatusInfo().addStatusInfoListener( listener,
+            new StatusInfoSubscription().setSubtree( root.getReceipt() ).setThread( Thread.currentThread() )
+                .setChangeTypes( ChangeType.BEGAN ) );
+
+        Thread worker = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                getStatusInfo().endOperation(
+                    getStatusInfo().startSubOperation( root.getReceipt(), "other thread" ).getReceipt() );
+            }
+        } );
+        worker.start();
+        worker.join();
+        this.getStatusInfo().endOperation( this.getStatusInfo().startOperation( "this thread" ).getReceipt() );
+        this.getStatusInfo().endOperation( root.getReceipt() );
+
+        Assert.assertEquals( "Only events of the thread must be delivered.", Arrays.asList( "this thread:BEGAN" ),
+            listener._events );
+    }
+
+    @Test
+    public void testUnregisteredSubtreeListenerIsRemovedFromRoot()
+    {
+        OperationCreationResult root = this.getStatusInfo().startOperation( "root" );
+        RecordingListener listener = new RecordingListener();
+        ListenerRegistration registration = this.getStatusInfo().addStatusInfoListener( listener,
+            new StatusInfoSubscription().setSubtree( root.getReceipt() ).setChangeTypes( ChangeType.BEGAN ) );
+        Assert.assertEquals( "Subtree listeners must not be counted as dedicated listeners.", 0, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getThreadSnapshots().iterator().next().getOperationStatuses().get( 0 )
+            .getAmountOfDedicatedListeners() );
+
+        registration.unregister();
+        this.getStatusInfo().endOperation( this.getStatusInfo().startOperation( "child" ).getReceipt() );
+
+        Assert.assertEquals( "Unregistered subtree listener must not receive events.", 0, listener._events.size() );
+        Assert.assertEquals( "Unregistered subtree listener must not be counted.", 0, this.getStatusInfo()
+            .getSnapshotOfCurrentState().getAmountOfAllListeners() );
+        this.getStatusInfo().endOperation( root.getReceipt() );
+    }
+}
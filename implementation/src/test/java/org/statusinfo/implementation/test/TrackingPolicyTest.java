@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.statusinfo.api.OperationMetrics;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+import org.statusinfo.api.StatusInfoService.Operation;
+import org.statusinfo.api.StatusInfoSubscription;
+import org.statusinfo.api.bootstrap.StatusInfoSettings;
+import org.statusinfo.api.bootstrap.TrackingPolicy;
+
+/**
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class TrackingPolicyTest extends AbstractConfiguredStatusInfoTest
+{
+    private static final String SAMPLED_NAME = "Sampled operation.";
+    private static final String VERBOSE_NAME = "Verbose operation.";
+    private static final int SAMPLE_INTERVAL = 4;
+
+    private final List<StatusInfo> _began = new ArrayList<StatusInfo>();
+
+    @Override
+    protected StatusInfoSettings createSettings()
+    {
+        return new StatusInfoSettings().setCollectingMetrics( true )
+            .setTrackingPolicy( SAMPLED_NAME, TrackingPolicy.sampled( SAMPLE_INTERVAL ) )
+            .setTrackingPolicy( VERBOSE_NAME, TrackingPolicy.atVerbosity( 2 ) ).setVerbosity( 1 );
+    }
+
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        this.getStatusInfo().addStatusInfoListener( new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                _began.add( statusInfo );
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        }, new StatusInfoSubscription().setChangeTypes( ChangeType.BEGAN ) );
+    }
+
+    @Test
+    public void testSampledOperationsAreCountedButOnlySomeAreTracked()
+    {
+        for( int idx = 0; idx < 2 * SAMPLE_INTERVAL; ++idx )
+        {
+            this.perform( SAMPLED_NAME, null );
+        }
+
+        Assert.assertEquals( "One operation out of sample interval must be tracked.", 2, this._began.size() );
+        OperationMetrics metrics = this.getStatusInfo().getOperationMetrics( SAMPLED_NAME );
+        Assert.assertEquals( "All operations must be counted as started.", 2L * SAMPLE_INTERVAL, metrics.getStarted() );
+        Assert.assertEquals( "All operations must be counted as completed.", 2L * SAMPLE_INTERVAL,
+            metrics.getCompleted() );
+    }
+
+    @Test
+    public void testShortLivedThreadsAreSampledToo()
+        throws Exception
+    {
+        int threads = 100 * SAMPLE_INTERVAL;
+        for( int idx = 0; idx < threads; ++idx )
+        {
+            Thread thread = new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    perform( SAMPLED_NAME, null );
+                }
+            } );
+            thread.start();
+            thread.join();
+        }
+
+        // Expected amount is 100, the bounds are several standard deviations away from it
+        Assert.assertTrue( "Roughly one operation out of sample interval must be tracked, but " + this._began.size()
+            + " were.", this._began.size() >= 50 && this._began.size() <= 150 );
+    }
+
+    @Test
+    public void testOperationsWithinUntrackedOperationAttachToTrackedAncestor()
+    {
+        this.perform( OPERATION_NAME, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                perform( VERBOSE_NAME, new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        getStatusInfo().updateCurrentOperation( 5 );
+                        perform( OPERATION_NAME, null );
+                    }
+                } );
+                Assert.assertEquals( "Updates within untracked operation must go to tracked ancestor.", 5,
+                    getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots().iterator().next()
+                        .getOperationStatuses().get( 0 ).getStatusInfo().getCurrentSteps() );
+            }
+        } );
+
+        Assert.assertEquals( "Operation below verbosity must not be tracked.", 2, this._began.size() );
+        Assert.assertEquals( "Operation within untracked operation must be child of tracked ancestor.",
+            this._began.get( 0 ), this._began.get( 1 ).getParent() );
+        Assert.assertEquals( "Untracked operation must be counted.", 1L,
+            this.getStatusInfo().getOperationMetrics( VERBOSE_NAME ).getCompleted() );
+    }
+
+    private void perform( String name, final Runnable body )
+    {
+        this.getStatusInfo().performOperation( name, new Operation<Void, RuntimeException>()
+        {
+            @Override
+            public Void doOperation()
+            {
+                if( body != null )
+                {
+                    body.run();
+                }
+                return null;
+            }
+        } );
+    }
+}
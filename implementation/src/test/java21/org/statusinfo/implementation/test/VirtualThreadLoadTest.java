@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2011, Stanislav Muhametsin. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.statusinfo.implementation.test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.statusinfo.api.OperationCreationResult;
+import org.statusinfo.api.StatusInfo;
+import org.statusinfo.api.StatusInfoListener;
+import org.statusinfo.api.StatusInfoListener.ChangeType;
+import org.statusinfo.api.StatusInfoSnapshot;
+import org.statusinfo.api.StatusInfoSubscription;
+import org.statusinfo.api.ThreadSnapshot;
+
+/**
+ * Runs operations in a million virtual threads. Only compiled on JDK 21 and newer, and only run when the
+ * {@value #LOAD_TESTS_PROPERTY} system property is {@code true}, e.g. with the {@code load-tests} profile.
+ *
+ * @author 2011 Stanislav Muhametsin
+ */
+public class VirtualThreadLoadTest extends AbstractStatusInfoTest
+{
+    public static final String LOAD_TESTS_PROPERTY = "statusinfo.loadTests";
+
+    private static final int THREADS = 1000000;
+    private static final int DEPTH = 3;
+    // Every this many threads keep their operations in progress until a snapshot has been checked
+    private static final int SNAPSHOT_INTERVAL = 100000;
+    private static final long MAX_WAIT_SECONDS = 60L;
+
+    private final LongAdder _began = new LongAdder();
+    private final LongAdder _ended = new LongAdder();
+    // Threads which saw something else than their own operations as current operation
+    private final AtomicInteger _mismatches = new AtomicInteger();
+
+    @Test
+    public void testMillionVirtualThreadsWithNestedOperations()
+        throws Exception
+    {
+        Assume.assumeTrue( Boolean.getBoolean( LOAD_TESTS_PROPERTY ) );
+
+        this.getStatusInfo().addStatusInfoListener( new StatusInfoListener()
+        {
+
+            @Override
+            public void operationChanged( StatusInfo statusInfo, ChangeType changeType, int stepsAdded )
+            {
+                (ChangeType.BEGAN.equals( changeType ) ? _began : _ended).increment();
+            }
+
+            @Override
+            public boolean isInterestedInStatusInfo( StatusInfo statusInfo )
+            {
+                return true;
+            }
+        }, new StatusInfoSubscription().setChangeTypes( ChangeType.BEGAN, ChangeType.ENDED ) );
+
+        try( ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor() )
+        {
+            for( int idx = 0; idx < THREADS; ++idx )
+            {
+                if( idx % SNAPSHOT_INTERVAL == 0 )
+                {
+                    this.checkVisibleWhileRunning( executor );
+                }
+                else
+                {
+                    executor.submit( () -> this.performNested( null, null ) );
+                }
+            }
+        }
+
+        Assert.assertEquals( "Every thread must only see its own operations.", 0, this._mismatches.get() );
+        Assert.assertEquals( "Every operation must begin once.", (long) THREADS * DEPTH, this._began.sum() );
+        Assert.assertEquals( "Every operation must end once.", (long) THREADS * DEPTH, this._ended.sum() );
+        Assert.assertFalse( "Every stack must be empty.", this.getStatusInfo().getSnapshotOfCurrentState()
+            .getThreadSnapshots().iterator().hasNext() );
+    }
+
+    private void checkVisibleWhileRunning( ExecutorService executor )
+        throws InterruptedException
+    {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch checked = new CountDownLatch( 1 );
+        final List<String> ids = new ArrayList<String>();
+        final Thread[] thread = new Thread[1];
+        executor.submit( () -> {
+            thread[0] = Thread.currentThread();
+            this.performNested( ids, () -> {
+                started.countDown();
+                checked.await();
+                return null;
+            } );
+            return null;
+        } );
+
+        Assert.assertTrue( "Operations must start.", started.await( MAX_WAIT_SECONDS, TimeUnit.SECONDS ) );
+        List<String> visible = new ArrayList<String>();
+        for( ThreadSnapshot threadSnapshot : this.getStatusInfo().getSnapshotOfCurrentState().getThreadSnapshots() )
+        {
+            if( threadSnapshot.getThread() == thread[0] )
+            {
+                for( StatusInfoSnapshot snapshot : threadSnapshot.getOperationStatuses() )
+                {
+                    visible.add( snapshot.getStatusInfo().getID() );
+                }
+            }
+        }
+        checked.countDown();
+        Assert.assertEquals( "All started operations must be visible while in progress.", new HashSet<String>( ids ),
+            new HashSet<String>( visible ) );
+    }
+
+    private Void performNested( List<String> ids, Callable<Void> innermost )
+        throws Exception
+    {
+        List<String> receipts = new ArrayList<String>( DEPTH );
+        List<String> started = new ArrayList<String>( DEPTH );
+        for( int depth = 0; depth < DEPTH; ++depth )
+        {
+            OperationCreationResult creation = this.getStatusInfo().startOperation( OPERATION_NAME );
+            receipts.add( creation.getReceipt() );
+            started.add( creation.getID() );
+            this.getStatusInfo().updateCurrentOperation( 1 );
+            if( !creation.getID().equals( this.getStatusInfo().getCurrentOperation().getID() ) )
+            {
+                this._mismatches.incrementAndGet();
+            }
+        }
+        if( ids != null )
+        {
+            ids.addAll( started );
+        }
+        if( innermost == null )
+        {
+            // Let other virtual threads run while operations of this one are in progress
+            Thread.yield();
+        }
+        else
+        {
+            innermost.call();
+        }
+        for( int depth = DEPTH - 1; depth >= 0; --depth )
+        {
+            this.getStatusInfo().endOperation( receipts.get( depth ) );
+        }
+        if( this.getStatusInfo().getCurrentOperation() != null )
+        {
+            this._mismatches.incrementAndGet();
+        }
+        return null;
+    }
+}